@@ -0,0 +1,70 @@
+package com.paulina.libraryapi.benchmark;
+
+import com.paulina.libraryapi.api.dto.BookDTO;
+import com.paulina.libraryapi.api.dto.SuggestionDTO;
+import com.paulina.libraryapi.api.resource.BookController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BookControllerBenchmark {
+
+    @Benchmark
+    public BookDTO get(LibraryState state) {
+        long id = ThreadLocalRandom.current().nextLong(1, state.books + 1);
+        return state.getBean(BookController.class).get(id, request());
+    }
+
+    /**
+     * A client revalidating its copy: seeded books are at version 0, answered without loading nor mapping them.
+     */
+    @Benchmark
+    public BookDTO getNotModified(LibraryState state) {
+        long id = ThreadLocalRandom.current().nextLong(1, state.books + 1);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books/" + id);
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"0\"");
+        return state.getBean(BookController.class).get(id, new ServletWebRequest(request, new MockHttpServletResponse()));
+    }
+
+    @Benchmark
+    public Page<BookDTO> find(LibraryState state) {
+        long book = ThreadLocalRandom.current().nextLong(1, state.books + 1);
+        BookDTO filter = BookDTO.builder().title("Title " + book).build();
+        return state.getBean(BookController.class).find(filter, PageRequest.of(0, state.pageSize), request());
+    }
+
+    @Benchmark
+    public List<BookDTO> search(LibraryState state) {
+        long book = ThreadLocalRandom.current().nextLong(1, state.books + 1);
+        return state.getBean(BookController.class).search("title " + book, state.pageSize);
+    }
+
+    @Benchmark
+    public List<SuggestionDTO> suggest(LibraryState state) {
+        long book = ThreadLocalRandom.current().nextLong(1, state.books + 1);
+        String title = "title " + book;
+        // the title without its last digit, as typed before picking a suggestion
+        return state.getBean(BookController.class).suggest(title.substring(0, title.length() - 1), 10);
+    }
+
+    private static ServletWebRequest request() {
+        return new ServletWebRequest(new MockHttpServletRequest("GET", "/api/books"), new MockHttpServletResponse());
+    }
+}
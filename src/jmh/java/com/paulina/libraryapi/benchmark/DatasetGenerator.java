@@ -0,0 +1,227 @@
+package com.paulina.libraryapi.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic library written straight into the {@code book} and {@code loan} tables: {@code books} books with valid
+ * ISBN-13s, {@code customers} customers and a history of up to {@code loans} loans over the last {@code days} days.
+ * <p>
+ * Books, authors and customers are picked with a Zipf distribution of exponent {@code skew}, so a few titles and
+ * readers account for most of the loans, as in a real catalog; 0 picks them uniformly. Ranks are shuffled, a popular
+ * book is not a low id. A book has at most one open loan, as the service enforces, and loans kept longer than three
+ * days are left for the late-loan job. The same seed gives the same dataset, relative to the day it runs.
+ */
+public class DatasetGenerator {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private static final String[] FIRST_NAMES = { "Ana", "Artur", "Beatriz", "Bruno", "Camila", "Carlos", "Clara",
+            "Daniel", "Eduarda", "Felipe", "Gabriela", "Heitor", "Isabela", "Jana", "Joao", "Julia", "Lucas", "Luiza",
+            "Marcos", "Mariana", "Miguel", "Paulina", "Pedro", "Rafael", "Sofia", "Tiago", "Valentina", "Vitor" };
+
+    private static final String[] LAST_NAMES = { "Almeida", "Barbosa", "Cardoso", "Costa", "Dias", "Ferreira",
+            "Gomes", "Lima", "Martins", "Melo", "Oliveira", "Pereira", "Ribeiro", "Rocha", "Santos", "Silva", "Souza" };
+
+    private static final String[] TITLE_WORDS = { "Amor", "Arte", "Caminho", "Cidade", "Conto", "Destino", "Estrela",
+            "Historia", "Jardim", "Livro", "Mar", "Memoria", "Noite", "Pedra", "Rio", "Segredo", "Sertao", "Sol",
+            "Sombra", "Tempo", "Terra", "Vento", "Verao", "Viagem", "Vida" };
+
+    private final int books;
+    private final int customers;
+    private final int loans;
+    private final int days;
+    private final long seed;
+    private final Zipf bookPopularity;
+    private final Zipf customerActivity;
+    private final int[] bookByRank;
+    private final int[] customerByRank;
+    private final int[] rankOfBook;
+    private int openLoans;
+    private int lateLoans;
+
+    public DatasetGenerator(int books, int customers, int loans, int days, double skew, long seed) {
+        if (books < 1 || customers < 1 || loans < 0 || days < 1) {
+            throw new IllegalArgumentException("Expected at least one book, customer and day");
+        }
+        this.books = books;
+        this.customers = customers;
+        this.loans = loans;
+        this.days = days;
+        this.seed = seed;
+        Random random = new Random(seed);
+        this.bookPopularity = new Zipf(books, skew);
+        this.customerActivity = new Zipf(customers, skew);
+        this.bookByRank = shuffledIds(books, random);
+        this.customerByRank = shuffledIds(customers, random);
+        this.rankOfBook = new int[books + 1];
+        for (int rank = 0; rank < books; rank++) {
+            rankOfBook[bookByRank[rank]] = rank;
+        }
+    }
+
+    public int books() {
+        return books;
+    }
+
+    public int customers() {
+        return customers;
+    }
+
+    public int openLoans() {
+        return openLoans;
+    }
+
+    public int lateLoans() {
+        return lateLoans;
+    }
+
+    /**
+     * A book id, 1 to {@code books}, popular ones more often.
+     */
+    public int book(Random random) {
+        return bookByRank[bookPopularity.rank(random)];
+    }
+
+    /**
+     * A customer number, 0 to {@code customers - 1}, active ones more often.
+     */
+    public int customer(Random random) {
+        return customerByRank[customerActivity.rank(random)] - 1;
+    }
+
+    /**
+     * An ISBN-13 in the 978 prefix with a valid check digit, unique per book.
+     */
+    public static String isbn(long book) {
+        String digits = String.format(Locale.ROOT, "978%09d", book);
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    public static String title(long book) {
+        return TITLE_WORDS[(int) (book % TITLE_WORDS.length)] + " " + TITLE_WORDS[(int) (book / TITLE_WORDS.length % TITLE_WORDS.length)]
+                + (book >= TITLE_WORDS.length * TITLE_WORDS.length ? " " + book / (TITLE_WORDS.length * TITLE_WORDS.length) : "");
+    }
+
+    /**
+     * About ten books per author, the popular authors writing the popular books.
+     */
+    public String author(long book) {
+        return customerName(customers + rankOfBook[(int) book] / 10);
+    }
+
+    public static String customerName(int customer) {
+        return FIRST_NAMES[customer % FIRST_NAMES.length] + " " + LAST_NAMES[customer / FIRST_NAMES.length % LAST_NAMES.length]
+                + (customer >= FIRST_NAMES.length * LAST_NAMES.length ? " " + customer / (FIRST_NAMES.length * LAST_NAMES.length) : "");
+    }
+
+    public static String email(int customer) {
+        return customerName(customer).toLowerCase(Locale.ROOT).replace(' ', '.') + "@library.test";
+    }
+
+    /**
+     * Writes the books, then the loans in the order they were made, in jdbc batches.
+     */
+    public void generate(JdbcTemplate jdbcTemplate) {
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (long book = 1; book <= books; book++) {
+            batch.add(new Object[]{book, title(book), author(book), isbn(book)});
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate("insert into book (id, title, author, isbn) values (?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into book (id, title, author, isbn) values (?, ?, ?, ?)", batch);
+        batch.clear();
+
+        Random random = new Random(seed + 1);
+        LocalDate today = LocalDate.now();
+        long first = today.toEpochDay() - days;
+        // the day each book is back on the shelf
+        long[] returnedOn = new long[books + 1];
+        openLoans = 0;
+        lateLoans = 0;
+        for (long loan = 0; loan < loans; loan++) {
+            long day = first + loan * days / Math.max(1, loans);
+            int book = book(random);
+            // the popular book is out, the customer takes another one
+            for (int attempt = 0; attempt < 10 && returnedOn[book] > day; attempt++) {
+                book = book(random);
+            }
+            if (returnedOn[book] > day) {
+                continue;
+            }
+            // mostly two weeks, one loan in ten kept up to two months
+            long kept = random.nextInt(10) == 0 ? 1 + random.nextInt(60) : 1 + random.nextInt(14);
+            returnedOn[book] = day + kept;
+            Boolean returned = Boolean.TRUE;
+            if (returnedOn[book] > today.toEpochDay()) {
+                returned = null;
+                openLoans++;
+                if (day <= today.toEpochDay() - 3) {
+                    lateLoans++;
+                }
+            }
+            int customer = customer(random);
+            batch.add(new Object[]{customerName(customer), email(customer), book, Date.valueOf(LocalDate.ofEpochDay(day)), returned});
+            if (batch.size() == BATCH_SIZE) {
+                insertLoans(jdbcTemplate, batch);
+                batch.clear();
+            }
+        }
+        insertLoans(jdbcTemplate, batch);
+    }
+
+    private void insertLoans(JdbcTemplate jdbcTemplate, List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("insert into loan (customer, customer_email, book_id, loan_date, returned) values (?, ?, ?, ?, ?)", batch);
+    }
+
+    private static int[] shuffledIds(int count, Random random) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i + 1;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Ranks 0 to {@code n - 1} with probability proportional to {@code 1 / (rank + 1)^skew}, by binary search over the
+     * cumulative weights.
+     */
+    private static class Zipf {
+
+        private final double[] cumulative;
+
+        Zipf(int n, double skew) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int rank = 0; rank < n; rank++) {
+                sum += 1 / Math.pow(rank + 1, skew);
+                cumulative[rank] = sum;
+            }
+        }
+
+        int rank(Random random) {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int index = Arrays.binarySearch(cumulative, target);
+            return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.paulina.libraryapi.benchmark;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * The book as it was mapped before the pooled sequences, for the baseline of {@link InsertBenchmark}: the id comes
+ * from the identity column, so Hibernate inserts every row on its own to read it back. Same table as {@code Book}.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity(name = "IdentityBook")
+@Table(name = "book")
+public class IdentityBook {
+
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column
+    private String title;
+
+    @Column
+    private String author;
+
+    @Column
+    private String isbn;
+}
@@ -0,0 +1,41 @@
+package com.paulina.libraryapi.benchmark;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * The loan as it was mapped before the pooled sequences, for the baseline of {@link InsertBenchmark}. Same table as
+ * {@code Loan}, the book is only referenced by id.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity(name = "IdentityLoan")
+@Table(name = "loan")
+public class IdentityLoan {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column
+    private String customer;
+
+    @Column(name = "customer_email")
+    private String customerEmail;
+
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Column
+    private LocalDate loanDate;
+
+    @Column
+    private Boolean returned;
+}
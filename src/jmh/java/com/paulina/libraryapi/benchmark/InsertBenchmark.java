@@ -0,0 +1,101 @@
+package com.paulina.libraryapi.benchmark;
+
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.entity.Loan;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Time to insert {@code rows} books or returned loans, committing every {@code chunk} rows. {@code jdbcBatchSize=1}
+ * turns JDBC batching off for the session.
+ * <p>
+ * {@code ids=sequence} persists {@code Book} and {@code Loan}, with their pooled sequences; {@code ids=identity}
+ * persists {@link IdentityBook} and {@link IdentityLoan}, the same tables mapped with the identity columns as before
+ * the sequences, which Hibernate never batches. Every trial runs in its own fork on a freshly seeded database, so the
+ * two strategies never hand out ids in the same table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class InsertBenchmark {
+
+    private static final String IDENTITY = "identity";
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"1000"})
+    public int chunk;
+
+    @Param({"1", "50"})
+    public int jdbcBatchSize;
+
+    @Param({"sequence", IDENTITY})
+    public String ids;
+
+    private int run;
+
+    @Benchmark
+    public int insertBooks(LibraryState state) {
+        int prefix = run++;
+        return insert(state, (entityManager, i) -> {
+            String isbn = "insert-" + prefix + "-" + i;
+            if (IDENTITY.equals(ids)) {
+                return IdentityBook.builder().title("Title " + i).author("Author " + i).isbn(isbn).build();
+            }
+            return Book.builder().title("Title " + i).author("Author " + i).isbn(isbn).build();
+        });
+    }
+
+    @Benchmark
+    public int insertLoans(LibraryState state) {
+        LocalDate today = LocalDate.now();
+        return insert(state, (entityManager, i) -> {
+            long book = i % state.books + 1;
+            String customer = LibraryState.customer(i);
+            if (IDENTITY.equals(ids)) {
+                return IdentityLoan.builder().customer(customer).customerEmail(customer + "@email.com").bookId(book)
+                        .loanDate(today).returned(true).build();
+            }
+            return Loan.builder().customer(customer).customerEmail(customer + "@email.com")
+                    .book(entityManager.getReference(Book.class, book)).loanDate(today).returned(true).build();
+        });
+    }
+
+    private int insert(LibraryState state, BiFunction<EntityManager, Integer, Object> row) {
+        TransactionTemplate transaction = new TransactionTemplate(state.getBean(PlatformTransactionManager.class));
+        EntityManagerFactory entityManagerFactory = state.getBean(EntityManagerFactory.class);
+        for (int from = 0; from < rows; from += chunk) {
+            int start = from;
+            transaction.executeWithoutResult(status -> {
+                EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+                entityManager.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+                for (int i = start; i < Math.min(start + chunk, rows); i++) {
+                    entityManager.persist(row.apply(entityManager, i));
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,161 @@
+package com.paulina.libraryapi.benchmark;
+
+import com.paulina.libraryapi.LibraryApiApplication;
+import com.paulina.libraryapi.service.search.BookSearchIndex;
+import com.paulina.libraryapi.service.search.BookSuggester;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Boots the application once per trial against an embedded H2 database and seeds it with
+ * {@code books} books and {@code loans} loans. The first half of the books has one open loan,
+ * every other loan is returned. With {@code database=tcp} the database is reached through a local H2 TCP
+ * server, so every statement pays a socket round trip like a networked database would.
+ * <p>
+ * The drivers run outside JMH may seed a {@link DatasetGenerator} instead. Mails are dropped by {@link OfflineMail},
+ * no run reaches an SMTP server.
+ */
+@State(Scope.Benchmark)
+public class LibraryState {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    @Param({"10000"})
+    public int loans;
+
+    @Param({"1000"})
+    public int books;
+
+    @Param({"20"})
+    public int pageSize;
+
+    @Param({"mem"})
+    public String database;
+
+    public DatasetGenerator dataset;
+
+    public ConfigurableApplicationContext context;
+
+    private Server server;
+
+    @Setup(Level.Trial)
+    public void start() throws SQLException {
+        boot();
+    }
+
+    /**
+     * Boots the application with the given properties on top of the benchmark ones, for the drivers run outside JMH.
+     */
+    public void boot(String... properties) throws SQLException {
+        String url = "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+        if ("tcp".equals(database)) {
+            // remote clients cannot create databases, open it in-process first
+            DriverManager.getConnection(url, "sa", "").close();
+            server = Server.createTcpServer("-tcpPort", "0").start();
+            url = "jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:benchmark;DB_CLOSE_DELAY=-1";
+        }
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "--server.port=0",
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=sa",
+                "--logging.file.name=",
+                "--logging.level.root=WARN",
+                "--logging.level.com.paulina.libraryapi=WARN"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        context = new SpringApplicationBuilder(LibraryApiApplication.class, OfflineMail.class).run(args.toArray(new String[0]));
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        if (dataset != null) {
+            dataset.generate(jdbcTemplate);
+        } else {
+            seed(jdbcTemplate);
+        }
+        // the seed goes through the identity columns, move the pooled sequences past it
+        jdbcTemplate.execute("alter sequence book_seq restart with (select coalesce(max(id), 0) + 50 from book)");
+        jdbcTemplate.execute("alter sequence loan_seq restart with (select coalesce(max(id), 0) + 50 from loan)");
+        // the seed bypasses the service, index it like a restarted node would
+        context.getBean(BookSearchIndex.class).rebuild();
+        context.getBean(BookSuggester.class).rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    public int port() {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public long openBook() {
+        return ThreadLocalRandom.current().nextLong(1, books / 2 + 1);
+    }
+
+    public long returnedBook() {
+        return ThreadLocalRandom.current().nextLong(books / 2 + 1, books + 1);
+    }
+
+    public static String isbn(long book) {
+        return "isbn-" + book;
+    }
+
+    public static String customer(long loan) {
+        return "customer-" + (loan % 5_000);
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate) {
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (long book = 1; book <= books; book++) {
+            batch.add(new Object[]{"Title " + book, "Author " + (book % 300), isbn(book)});
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate("insert into book (title, author, isbn) values (?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into book (title, author, isbn) values (?, ?, ?)", batch);
+        batch.clear();
+
+        LocalDate today = LocalDate.now();
+        long lastRound = loans - books;
+        for (long loan = 0; loan < loans; loan++) {
+            long book = loan % books + 1;
+            Date loanDate = Date.valueOf(today.minusDays(loan % 365));
+            Boolean returned = loan >= lastRound && book <= books / 2 ? null : Boolean.TRUE;
+            batch.add(new Object[]{customer(loan), customer(loan) + "@email.com", book, loanDate, returned});
+            if (batch.size() == BATCH_SIZE) {
+                insertLoans(jdbcTemplate, batch);
+                batch.clear();
+            }
+        }
+        insertLoans(jdbcTemplate, batch);
+    }
+
+    private void insertLoans(JdbcTemplate jdbcTemplate, List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("insert into loan (customer, customer_email, book_id, loan_date, returned) values (?, ?, ?, ?, ?)", batch);
+    }
+}
@@ -0,0 +1,257 @@
+package com.paulina.libraryapi.benchmark;
+
+import com.paulina.libraryapi.config.VirtualThreads;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Closed-loop HTTP load comparing Tomcat's platform thread pool with the {@code virtual-threads} profile:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@load -Dload.args="clients=1000,5000,10000 duration=PT30S"
+ * </pre>
+ * Every client sends requests back to back over its own keep-alive connection, to endpoints that block on JDBC.
+ * Both modes accept the same number of connections, so only the threads serving them differ. Prints the throughput
+ * and the latency percentiles of every mode and number of clients, and writes them as csv to {@code out}.
+ * <p>
+ * Clients run in the same JVM as the application, on virtual threads when available. Run the virtual mode on
+ * Java 21 or later, it is skipped otherwise; 10k clients on platform threads need {@code ulimit -u} and
+ * {@code ulimit -n} above 20k.
+ */
+public class LoadBenchmark {
+
+    private static final String PLATFORM = "platform";
+    private static final String VIRTUAL = "virtual";
+
+    public static void main(String[] args) throws Exception {
+        // devtools would relaunch this main method with the arguments of the application
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Map<String, String> options = parse(args);
+        List<Integer> clients = new ArrayList<>();
+        for (String count : options.getOrDefault("clients", "1000,5000,10000").split(",")) {
+            clients.add(Integer.parseInt(count.trim()));
+        }
+        List<String> modes = Arrays.asList(options.getOrDefault("modes", PLATFORM + "," + VIRTUAL).split(","));
+        List<String> paths = Arrays.asList(options.getOrDefault("paths",
+                "/api/books/{book}/loans?size=20,/api/loans?isbn=isbn-{book}&count=false&size=20").split(","));
+        Duration warmup = Duration.parse(options.getOrDefault("warmup", "PT10S"));
+        Duration duration = Duration.parse(options.getOrDefault("duration", "PT30S"));
+        Path out = Paths.get(options.getOrDefault("out", "target/load-benchmark.csv"));
+
+        // the default keeps 5 idle connections per host, every other client would reconnect on each request
+        System.setProperty("http.maxConnections", String.valueOf(clients.stream().mapToInt(Integer::intValue).max().orElse(5)));
+
+        List<Result> results = new ArrayList<>();
+        for (String mode : modes) {
+            if (VIRTUAL.equals(mode) && !VirtualThreads.available()) {
+                System.out.println("skipping " + VIRTUAL + ": no virtual threads on Java " + System.getProperty("java.version"));
+                continue;
+            }
+            LibraryState state = new LibraryState();
+            state.books = Integer.parseInt(options.getOrDefault("books", "1000"));
+            state.loans = Integer.parseInt(options.getOrDefault("loans", "10000"));
+            state.database = options.getOrDefault("database", "mem");
+            List<String> properties = new ArrayList<>(Arrays.asList(
+                    "server.tomcat.max-connections=20000", "server.tomcat.accept-count=1000"));
+            if (VIRTUAL.equals(mode)) {
+                properties.add("spring.profiles.active=virtual-threads");
+            }
+            state.boot(properties.toArray(new String[0]));
+            try {
+                for (int count : clients) {
+                    Result result = run(mode, count, state, paths, warmup, duration);
+                    System.out.println(result);
+                    results.add(result);
+                }
+            } finally {
+                state.stop();
+            }
+        }
+
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8))) {
+            writer.println("mode,clients,requests,errors,throughput_per_s,p50_ms,p99_ms,max_ms");
+            results.forEach(result -> writer.println(result.csv()));
+        }
+        System.out.println("results written to " + out);
+    }
+
+    private static Result run(String mode, int clients, LibraryState state, List<String> paths, Duration warmup,
+                              Duration duration) throws InterruptedException {
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureTo = measureFrom + duration.toNanos();
+        Client[] running = new Client[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+        ThreadFactory threads = clientThreads();
+        for (int i = 0; i < clients; i++) {
+            running[i] = new Client(state, paths, measureFrom, measureTo, done);
+            threads.newThread(running[i]).start();
+        }
+        done.await();
+
+        int requests = 0;
+        int errors = 0;
+        for (Client client : running) {
+            requests += client.count;
+            errors += client.errors;
+        }
+        long[] latencies = new long[requests];
+        int offset = 0;
+        for (Client client : running) {
+            System.arraycopy(client.latencies, 0, latencies, offset, client.count);
+            offset += client.count;
+        }
+        Arrays.sort(latencies);
+        return new Result(mode, clients, requests, errors, requests / (duration.toNanos() / 1e9),
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 1));
+    }
+
+    private static ThreadFactory clientThreads() {
+        if (VirtualThreads.available()) {
+            return VirtualThreads.factory("client-");
+        }
+        // a small stack, the clients only wait on sockets
+        return runnable -> {
+            Thread thread = new Thread(null, runnable, "client", 256 * 1024);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.contains("=")) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            String name = arg.substring(0, arg.indexOf('='));
+            options.put(name.startsWith("--") ? name.substring(2) : name, arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Keeps the latencies of the requests started in the measured window, in nanoseconds.
+     */
+    private static class Client implements Runnable {
+
+        private final LibraryState state;
+        private final List<String> paths;
+        private final long measureFrom;
+        private final long measureTo;
+        private final CountDownLatch done;
+        private long[] latencies = new long[256];
+        private int count;
+        private int errors;
+
+        Client(LibraryState state, List<String> paths, long measureFrom, long measureTo, CountDownLatch done) {
+            this.state = state;
+            this.paths = paths;
+            this.measureFrom = measureFrom;
+            this.measureTo = measureTo;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                byte[] buffer = new byte[8192];
+                long start;
+                while ((start = System.nanoTime()) < measureTo) {
+                    boolean ok = request(buffer);
+                    if (start < measureFrom) {
+                        continue;
+                    }
+                    if (!ok) {
+                        errors++;
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - start;
+                }
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private boolean request(byte[] buffer) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String path = paths.get(random.nextInt(paths.size()))
+                    .replace("{book}", String.valueOf(random.nextLong(1, state.books + 1)));
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + state.port() + path).openConnection();
+                connection.setConnectTimeout(60_000);
+                connection.setReadTimeout(60_000);
+                int status = connection.getResponseCode();
+                // read to the end, or the connection is not reused
+                try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                    while (body != null && body.read(buffer) != -1) {
+                        // drain
+                    }
+                }
+                return status == 200;
+            } catch (IOException ex) {
+                return false;
+            }
+        }
+    }
+
+    private static class Result {
+
+        private final String mode;
+        private final int clients;
+        private final int requests;
+        private final int errors;
+        private final double throughput;
+        private final double p50;
+        private final double p99;
+        private final double max;
+
+        Result(String mode, int clients, int requests, int errors, double throughput, double p50, double p99, double max) {
+            this.mode = mode;
+            this.clients = clients;
+            this.requests = requests;
+            this.errors = errors;
+            this.throughput = throughput;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        String csv() {
+            return String.format(Locale.ROOT, "%s,%d,%d,%d,%.1f,%.2f,%.2f,%.2f", mode, clients, requests, errors, throughput, p50, p99, max);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-8s %6d clients %9.1f req/s  p50 %8.2f ms  p99 %8.2f ms  max %8.2f ms  %d errors",
+                    mode, clients, throughput, p50, p99, max, errors);
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.paulina.libraryapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.paulina.libraryapi.service.ScheduleService;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Repeatable mixed traffic against a locally started application seeded by {@link DatasetGenerator}, to compare
+ * builds before rolling them out:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@load-test -Dloadtest.args="label=candidate baseline=target/load-test/main.csv"
+ * </pre>
+ * Every client sends requests back to back, picking a scenario by the weights of {@code mix}:
+ * <ul>
+ *     <li>{@code browse}, a page of the books of an author, popular authors more often;</li>
+ *     <li>{@code isbn}, the book of an ISBN, popular books more often;</li>
+ *     <li>{@code loan}, a loan of a popular book by an active customer, returned right away so the dataset stays put.
+ *     A book already out is a rejected request, not an error.</li>
+ * </ul>
+ * Meanwhile the late-loan job runs every {@code job-interval} from the start of the measured window, with the mails
+ * dropped; the first run does the work of the day, the next ones find it done. Clients and generator are seeded from
+ * {@code seed}, so two runs send the same requests against the same dataset.
+ * <p>
+ * Writes the throughput and latency percentiles of every scenario to {@code out/label.csv} and, with the run settings,
+ * to {@code out/label.json}. With {@code baseline}, the csv of an earlier run, prints the change of each scenario.
+ * Runs offline, against an in-memory database unless {@code database=tcp}.
+ */
+public class LoadTest {
+
+    private static final String BROWSE = "browse";
+    private static final String ISBN = "isbn";
+    private static final String LOAN_CREATE = "loan-create";
+    private static final String LOAN_RETURN = "loan-return";
+    private static final String LATE_LOANS_JOB = "late-loans-job";
+    private static final List<String> SCENARIOS = Arrays.asList(BROWSE, ISBN, LOAN_CREATE, LOAN_RETURN, LATE_LOANS_JOB);
+
+    private static final String HEADER = "label,scenario,requests,errors,rejected,throughput_per_s,p50_ms,p90_ms,p99_ms,max_ms";
+
+    public static void main(String[] args) throws Exception {
+        // devtools would relaunch this main method with the arguments of the application
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Map<String, String> options = LoadBenchmark.parse(args);
+        String label = options.getOrDefault("label", "local");
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        int clients = Integer.parseInt(options.getOrDefault("clients", "32"));
+        Duration warmup = Duration.parse(options.getOrDefault("warmup", "PT15S"));
+        Duration duration = Duration.parse(options.getOrDefault("duration", "PT60S"));
+        Duration jobInterval = Duration.parse(options.getOrDefault("job-interval", "PT10S"));
+        Map<String, Integer> mix = mix(options.getOrDefault("mix", "browse:60,isbn:25,loan:15"));
+        Path out = Paths.get(options.getOrDefault("out", "target/load-test"));
+
+        DatasetGenerator dataset = new DatasetGenerator(
+                Integer.parseInt(options.getOrDefault("books", "10000")),
+                Integer.parseInt(options.getOrDefault("customers", "5000")),
+                Integer.parseInt(options.getOrDefault("loans", "200000")),
+                Integer.parseInt(options.getOrDefault("days", "365")),
+                Double.parseDouble(options.getOrDefault("skew", "1.0")),
+                seed);
+        LibraryState state = new LibraryState();
+        state.dataset = dataset;
+        state.database = options.getOrDefault("database", "mem");
+
+        long seeding = System.nanoTime();
+        // every run of the job does its work, instead of skipping until the lease of the previous one expires
+        state.boot("application.mail.lateloans.lock-at-least-for=0s");
+        System.out.printf(Locale.ROOT, "seeded %d books, %d open loans, %d late, in %.1f s%n", dataset.books(),
+                dataset.openLoans(), dataset.lateLoans(), (System.nanoTime() - seeding) / 1e9);
+
+        Map<String, Stats> results;
+        long mails;
+        ConnectionProvider connections = ConnectionProvider.builder("load-test")
+                .maxConnections(clients).pendingAcquireMaxCount(-1).build();
+        try {
+            WebClient client = WebClient.builder()
+                    .baseUrl("http://localhost:" + state.port())
+                    .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                    .build();
+            results = run(state, dataset, client, clients, mix, seed, warmup, duration, jobInterval);
+            mails = ((OfflineMail.Sender) state.getBean(JavaMailSender.class)).sent();
+        } finally {
+            connections.dispose();
+            state.stop();
+        }
+
+        List<String[]> rows = new ArrayList<>();
+        for (String scenario : SCENARIOS) {
+            Stats stats = results.get(scenario);
+            rows.add(stats.row(label, scenario, duration));
+            System.out.println(stats.describe(scenario, duration));
+        }
+        System.out.println("mails dropped " + mails);
+
+        Files.createDirectories(out.toAbsolutePath());
+        Path csv = out.resolve(label + ".csv");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(csv, StandardCharsets.UTF_8))) {
+            writer.println(HEADER);
+            rows.forEach(row -> writer.println(String.join(",", row)));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", label);
+        report.put("finishedAt", Instant.now().toString());
+        report.put("java", System.getProperty("java.version"));
+        report.put("options", new LinkedHashMap<>(options));
+        report.put("clients", clients);
+        report.put("warmup", warmup.toString());
+        report.put("duration", duration.toString());
+        report.put("mix", mix);
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("books", dataset.books());
+        data.put("customers", dataset.customers());
+        data.put("openLoans", dataset.openLoans());
+        data.put("lateLoans", dataset.lateLoans());
+        data.put("seed", seed);
+        report.put("dataset", data);
+        report.put("mailsDropped", mails);
+        List<Map<String, Object>> scenarios = new ArrayList<>();
+        String[] columns = HEADER.split(",");
+        for (String[] row : rows) {
+            Map<String, Object> scenario = new LinkedHashMap<>();
+            for (int i = 1; i < columns.length; i++) {
+                scenario.put(columns[i], i == 1 ? row[i] : Double.valueOf(row[i]));
+            }
+            scenarios.add(scenario);
+        }
+        report.put("scenarios", scenarios);
+        Path json = out.resolve(label + ".json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(json.toFile(), report);
+        System.out.println("results written to " + csv + " and " + json);
+
+        if (options.containsKey("baseline")) {
+            compare(Paths.get(options.get("baseline")), rows);
+        }
+    }
+
+    private static Map<String, Stats> run(LibraryState state, DatasetGenerator dataset, WebClient client, int clients,
+                                          Map<String, Integer> mix, long seed, Duration warmup, Duration duration,
+                                          Duration jobInterval) throws InterruptedException {
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureTo = measureFrom + duration.toNanos();
+        CountDownLatch done = new CountDownLatch(clients + 1);
+        List<Map<String, Stats>> recorded = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Client running = new Client(dataset, client, mix, new Random(seed + 1000 + i), measureFrom, measureTo, done);
+            recorded.add(running.stats);
+            new Thread(running, "client-" + i).start();
+        }
+        Job job = new Job(state.getBean(ScheduleService.class), jobInterval, measureFrom, measureTo, done);
+        recorded.add(job.stats);
+        new Thread(job, "late-loans-job").start();
+        done.await();
+
+        Map<String, Stats> merged = new HashMap<>();
+        SCENARIOS.forEach(scenario -> merged.put(scenario, new Stats()));
+        recorded.forEach(stats -> stats.forEach((scenario, part) -> merged.get(scenario).add(part)));
+        return merged;
+    }
+
+    private static Map<String, Integer> mix(String weights) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String weight : weights.split(",")) {
+            String[] parts = weight.split(":");
+            if (!Arrays.asList(BROWSE, ISBN, "loan").contains(parts[0]) || parts.length != 2) {
+                throw new IllegalArgumentException("Expected browse, isbn or loan with a weight, got " + weight);
+            }
+            mix.put(parts[0], Integer.parseInt(parts[1]));
+        }
+        return mix;
+    }
+
+    private static void compare(Path baseline, List<String[]> rows) throws Exception {
+        Map<String, String[]> before = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(baseline, StandardCharsets.UTF_8)) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] row = line.split(",");
+                before.put(row[1], row);
+            }
+        }
+        System.out.println("against " + baseline);
+        for (String[] row : rows) {
+            String[] old = before.get(row[1]);
+            if (old == null) {
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%-15s throughput %+7.1f%%  p50 %+7.1f%%  p99 %+7.1f%%%n", row[1],
+                    change(old[5], row[5]), change(old[6], row[6]), change(old[8], row[8]));
+        }
+    }
+
+    private static double change(String before, String after) {
+        double old = Double.parseDouble(before);
+        return old == 0 ? 0 : (Double.parseDouble(after) - old) * 100 / old;
+    }
+
+    /**
+     * Latencies in nanoseconds of the requests started in the measured window, and their outcomes.
+     */
+    private static class Stats {
+
+        private long[] latencies = new long[256];
+        private int count;
+        private int errors;
+        private int rejected;
+
+        void record(long nanos, int status) {
+            if (status >= 500 || status == 0) {
+                errors++;
+            } else if (status >= 400) {
+                rejected++;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        void add(Stats other) {
+            latencies = Arrays.copyOf(latencies, count + other.count);
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            errors += other.errors;
+            rejected += other.rejected;
+        }
+
+        String[] row(String label, String scenario, Duration duration) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return new String[]{label, scenario, String.valueOf(count), String.valueOf(errors), String.valueOf(rejected),
+                    format(count / (duration.toNanos() / 1e9)), format(LoadBenchmark.percentile(sorted, 0.50)),
+                    format(LoadBenchmark.percentile(sorted, 0.90)), format(LoadBenchmark.percentile(sorted, 0.99)),
+                    format(LoadBenchmark.percentile(sorted, 1))};
+        }
+
+        String describe(String scenario, Duration duration) {
+            String[] row = row("", scenario, duration);
+            return String.format(Locale.ROOT, "%-15s %9s req/s  p50 %8s ms  p90 %8s ms  p99 %8s ms  max %8s ms  %s errors  %s rejected",
+                    scenario, row[5], row[6], row[7], row[8], row[9], row[3], row[4]);
+        }
+
+        private static String format(double value) {
+            return String.format(Locale.ROOT, "%.2f", value);
+        }
+    }
+
+    private static class Client implements Runnable {
+
+        private final DatasetGenerator dataset;
+        private final WebClient client;
+        private final String[] scenarios;
+        private final int[] cumulativeWeights;
+        private final Random random;
+        private final long measureFrom;
+        private final long measureTo;
+        private final CountDownLatch done;
+        private final Map<String, Stats> stats = new HashMap<>();
+
+        Client(DatasetGenerator dataset, WebClient client, Map<String, Integer> mix, Random random,
+               long measureFrom, long measureTo, CountDownLatch done) {
+            this.dataset = dataset;
+            this.client = client;
+            this.scenarios = mix.keySet().toArray(new String[0]);
+            this.cumulativeWeights = new int[scenarios.length];
+            int sum = 0;
+            for (int i = 0; i < scenarios.length; i++) {
+                sum += mix.get(scenarios[i]);
+                cumulativeWeights[i] = sum;
+            }
+            this.random = random;
+            this.measureFrom = measureFrom;
+            this.measureTo = measureTo;
+            this.done = done;
+            SCENARIOS.forEach(scenario -> stats.put(scenario, new Stats()));
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (System.nanoTime() < measureTo) {
+                    int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+                    int scenario = 0;
+                    while (pick >= cumulativeWeights[scenario]) {
+                        scenario++;
+                    }
+                    switch (scenarios[scenario]) {
+                        case BROWSE:
+                            String author = dataset.author(dataset.book(random));
+                            send(BROWSE, HttpMethod.GET, "/api/books?author={author}&page={page}&size=20&sort=title",
+                                    null, author, random.nextInt(3));
+                            break;
+                        case ISBN:
+                            send(ISBN, HttpMethod.GET, "/api/books?isbn={isbn}&count=false&size=1",
+                                    null, DatasetGenerator.isbn(dataset.book(random)));
+                            break;
+                        default:
+                            loan();
+                    }
+                }
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private void loan() {
+            int customer = dataset.customer(random);
+            Map<String, String> loan = new HashMap<>();
+            loan.put("isbn", DatasetGenerator.isbn(dataset.book(random)));
+            loan.put("customer", DatasetGenerator.customerName(customer));
+            loan.put("email", DatasetGenerator.email(customer));
+            Response created = send(LOAN_CREATE, HttpMethod.POST, "/api/loans", loan);
+            if (created.status == 201) {
+                send(LOAN_RETURN, HttpMethod.PATCH, "/api/loans/{id}",
+                        Collections.singletonMap("returned", true), created.body.trim());
+            }
+        }
+
+        private Response send(String scenario, HttpMethod method, String uri, Object body, Object... variables) {
+            long start = System.nanoTime();
+            Response response;
+            try {
+                WebClient.RequestBodySpec request = client.method(method).uri(uri, variables);
+                if (body != null) {
+                    request.contentType(MediaType.APPLICATION_JSON).bodyValue(body);
+                }
+                response = request.exchangeToMono(result -> result.bodyToMono(String.class).defaultIfEmpty("")
+                                .map(content -> new Response(result.rawStatusCode(), content)))
+                        .block(Duration.ofSeconds(60));
+            } catch (RuntimeException ex) {
+                response = new Response(0, "");
+            }
+            if (start >= measureFrom && start < measureTo) {
+                stats.get(scenario).record(System.nanoTime() - start, response.status);
+            }
+            return response;
+        }
+    }
+
+    private static class Response {
+
+        private final int status;
+        private final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Runs the late-loan job in the application, as its cron trigger would.
+     */
+    private static class Job implements Runnable {
+
+        private final ScheduleService scheduleService;
+        private final Duration interval;
+        private final long measureFrom;
+        private final long measureTo;
+        private final CountDownLatch done;
+        private final Map<String, Stats> stats = new HashMap<>();
+
+        Job(ScheduleService scheduleService, Duration interval, long measureFrom, long measureTo, CountDownLatch done) {
+            this.scheduleService = scheduleService;
+            this.interval = interval;
+            this.measureFrom = measureFrom;
+            this.measureTo = measureTo;
+            this.done = done;
+            stats.put(LATE_LOANS_JOB, new Stats());
+        }
+
+        @Override
+        public void run() {
+            try {
+                Thread.sleep(Math.max(0, (measureFrom - System.nanoTime()) / 1_000_000));
+                while (System.nanoTime() < measureTo) {
+                    long start = System.nanoTime();
+                    int status = 200;
+                    try {
+                        scheduleService.sendMailToLateLoans();
+                    } catch (RuntimeException ex) {
+                        status = 500;
+                    }
+                    stats.get(LATE_LOANS_JOB).record(System.nanoTime() - start, status);
+                    Thread.sleep(Math.max(0, Math.min(interval.toMillis(), (measureTo - System.nanoTime()) / 1_000_000)));
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+}
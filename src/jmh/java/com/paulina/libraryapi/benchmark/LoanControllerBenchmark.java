@@ -0,0 +1,109 @@
+package com.paulina.libraryapi.benchmark;
+
+import com.paulina.libraryapi.api.dto.LoanDTO;
+import com.paulina.libraryapi.api.dto.LoanFilterDTO;
+import com.paulina.libraryapi.api.dto.ReturnedLoanDTO;
+import com.paulina.libraryapi.api.resource.LoanController;
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.entity.Loan;
+import com.paulina.libraryapi.service.LoanService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class LoanControllerBenchmark {
+
+    @Benchmark
+    public Page<LoanDTO> findByIsbn(LibraryState state) {
+        long book = ThreadLocalRandom.current().nextLong(1, state.books + 1);
+        LoanFilterDTO filter = LoanFilterDTO.builder().isbn(LibraryState.isbn(book)).build();
+        return state.getBean(LoanController.class).find(filter, PageRequest.of(0, state.pageSize));
+    }
+
+    @Benchmark
+    public Page<LoanDTO> findByCustomer(LibraryState state) {
+        long loan = ThreadLocalRandom.current().nextLong(state.loans);
+        LoanFilterDTO filter = LoanFilterDTO.builder().customer(LibraryState.customer(loan)).build();
+        return state.getBean(LoanController.class).find(filter, PageRequest.of(0, state.pageSize));
+    }
+
+    /**
+     * Goes through the active loan check and the insert of {@code LoanServiceImp.save}. The saved
+     * loans are already returned so the same books can be loaned again on the next invocation.
+     */
+    @Benchmark
+    public Loan save(LibraryState state) {
+        long book = state.returnedBook();
+        Loan loan = Loan.builder()
+                .book(Book.builder().id(book).isbn(LibraryState.isbn(book)).build())
+                .customer("benchmark")
+                .loanDate(LocalDate.now())
+                .returned(true)
+                .build();
+        return state.getBean(LoanService.class).save(loan);
+    }
+
+    /**
+     * {@code PATCH /api/loans/{id}}: one conditional update, the loan is not read.
+     */
+    @Benchmark
+    public void returnBook(LibraryState state, OpenLoan loan) {
+        state.getBean(LoanController.class).returnBook(loan.id, ReturnedLoanDTO.builder().returned(true).build());
+    }
+
+    /**
+     * The return as it was before the conditional update: load the loan with its book, then merge it.
+     */
+    @Benchmark
+    public Loan returnBookLoadAndSave(LibraryState state, OpenLoan loan) {
+        LoanService service = state.getBean(LoanService.class);
+        Loan open = service.getForUpdate(loan.id).orElseThrow(IllegalStateException::new);
+        open.setReturned(true);
+        return service.update(open);
+    }
+
+    /**
+     * An open loan of the seed for every invocation. It is reopened before the invocation, outside of the measured
+     * time, so the benchmarks only measure returns, never conflicts.
+     */
+    @State(Scope.Thread)
+    public static class OpenLoan {
+
+        private List<Long> ids;
+        private int next;
+        private JdbcTemplate jdbcTemplate;
+
+        Long id;
+
+        @Setup(Level.Trial)
+        public void load(LibraryState state) {
+            jdbcTemplate = state.getBean(JdbcTemplate.class);
+            ids = jdbcTemplate.queryForList("select id from loan where returned is null order by id", Long.class);
+        }
+
+        @Setup(Level.Invocation)
+        public void reopen() {
+            id = ids.get(next++ % ids.size());
+            jdbcTemplate.update("update loan set returned = null where id = ?", id);
+        }
+    }
+}
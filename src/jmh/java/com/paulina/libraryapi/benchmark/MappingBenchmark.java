@@ -0,0 +1,99 @@
+package com.paulina.libraryapi.benchmark;
+
+import com.paulina.libraryapi.api.dto.BookDTO;
+import com.paulina.libraryapi.api.dto.LoanDTO;
+import com.paulina.libraryapi.api.mapper.BookMapper;
+import com.paulina.libraryapi.api.mapper.LoanMapper;
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.entity.Loan;
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * DTO conversions for a page of {@code rows} entities, with the generated mappers used by the
+ * controllers against the reflective ModelMapper they replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class MappingBenchmark {
+
+    @Param({"20", "1000"})
+    public int rows;
+
+    private ModelMapper modelMapper;
+    private BookMapper bookMapper;
+    private LoanMapper loanMapper;
+    private List<Book> books;
+    private List<BookDTO> bookDTOs;
+    private List<Loan> loans;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        bookMapper = Mappers.getMapper(BookMapper.class);
+        loanMapper = Mappers.getMapper(LoanMapper.class);
+        books = new ArrayList<>(rows);
+        bookDTOs = new ArrayList<>(rows);
+        loans = new ArrayList<>(rows);
+        for (long id = 1; id <= rows; id++) {
+            Book book = Book.builder().id(id).title("As Aventuras " + id).author("Artur").isbn("isbn-" + id).build();
+            books.add(book);
+            bookDTOs.add(BookDTO.builder().id(id).title(book.getTitle()).author(book.getAuthor()).isbn(book.getIsbn()).build());
+            loans.add(Loan.builder().id(id).customer("Camila").customerEmail("camila@email.com")
+                    .book(book).loanDate(LocalDate.now()).build());
+        }
+    }
+
+    @Benchmark
+    public List<BookDTO> bookToDtoModelMapper() {
+        return books.stream().map(book -> modelMapper.map(book, BookDTO.class)).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<BookDTO> bookToDtoGenerated() {
+        return books.stream().map(bookMapper::toDto).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Book> dtoToBookModelMapper() {
+        return bookDTOs.stream().map(dto -> modelMapper.map(dto, Book.class)).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Book> dtoToBookGenerated() {
+        return bookDTOs.stream().map(bookMapper::toEntity).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<LoanDTO> loanToDtoModelMapper() {
+        return loans.stream().map(loan -> {
+            LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
+            loanDTO.setBook(modelMapper.map(loan.getBook(), BookDTO.class));
+            return loanDTO;
+        }).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<LoanDTO> loanToDtoGenerated() {
+        return loans.stream().map(loanMapper::toDto).collect(Collectors.toList());
+    }
+}
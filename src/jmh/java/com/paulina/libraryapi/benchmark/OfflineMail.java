@@ -0,0 +1,34 @@
+package com.paulina.libraryapi.benchmark;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replaces the SMTP sender of the booted application with one counting and dropping the mails, so the late-loan job
+ * runs offline. Given to the application builder rather than scanned, the benchmarks are in the application package.
+ */
+public class OfflineMail {
+
+    @Bean
+    public JavaMailSender javaMailSender() {
+        return new Sender();
+    }
+
+    public static class Sender extends JavaMailSenderImpl {
+
+        private final LongAdder sent = new LongAdder();
+
+        @Override
+        public void send(SimpleMailMessage... simpleMessages) {
+            sent.add(simpleMessages.length);
+        }
+
+        public long sent() {
+            return sent.sum();
+        }
+    }
+}
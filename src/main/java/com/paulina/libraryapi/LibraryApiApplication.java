@@ -1,11 +1,16 @@
 package com.paulina.libraryapi;
 
+import com.paulina.libraryapi.api.mapper.BookMapper;
+import com.paulina.libraryapi.api.mapper.LoanMapper;
 import com.paulina.libraryapi.service.EmailService;
-import org.modelmapper.ModelMapper;
+import org.mapstruct.factory.Mappers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
@@ -14,13 +19,21 @@ import java.util.List;
 
 //http://localhost:8080/swagger-ui.html#/
 
-@SpringBootApplication
+// the reactive read API configures its own connection factory, see ReactiveConfig; a second, reactive,
+// transaction manager would make every @Transactional ambiguous
+@SpringBootApplication(exclude = {R2dbcAutoConfiguration.class, R2dbcTransactionManagerAutoConfiguration.class})
 @EnableScheduling
+@EnableCaching
 public class LibraryApiApplication {
 
 	@Bean
-	public ModelMapper modelMapper(){
-		return new ModelMapper();
+	public BookMapper bookMapper(){
+		return Mappers.getMapper(BookMapper.class);
+	}
+
+	@Bean
+	public LoanMapper loanMapper(){
+		return Mappers.getMapper(LoanMapper.class);
 	}
 
 	public static void main(String[] args) {
@@ -4,6 +4,7 @@ import com.paulina.libraryapi.api.exception.ApiErrors;
 import com.paulina.libraryapi.api.exception.BusinessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -27,6 +28,14 @@ public class ApplicationControllerAdvice {
         return new ApiErrors(ex);
     }
 
+    /**
+     * Another request updated the same row first: the client has to read it again before retrying.
+     */
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity handleOptimisticLockingFailure( ObjectOptimisticLockingFailureException ex ){
+        return handleResponseStatusException(new ResponseStatusException(HttpStatus.CONFLICT, "Modified by another request, read it again"));
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity handleResponseStatusException( ResponseStatusException ex ){
         return new ResponseEntity(new ApiErrors(ex), ex.getStatus());
@@ -0,0 +1,73 @@
+package com.paulina.libraryapi.api.conditional;
+
+import com.paulina.libraryapi.model.entity.Book;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * HTTP validators of books: the version as strong ETag of a book, the ids and versions of its rows as weak ETag of a
+ * list page. Lists have no {@code Last-Modified}, it would not change when a book is deleted.
+ */
+public final class Validators {
+
+    private Validators() {
+    }
+
+    public static String etag(Long version) {
+        return version == null ? null : "\"" + version + "\"";
+    }
+
+    /**
+     * Built from the page itself, so validating it costs no query besides the page: it changes when one of its books
+     * is added, removed or modified, or when the rest of the page, its total or next page, does.
+     */
+    public static String weakEtag(List<Book> books, Object rest) {
+        StringBuilder page = new StringBuilder();
+        for (Book book : books) {
+            page.append(book.getId()).append(':').append(book.getVersion()).append(',');
+        }
+        page.append(rest);
+        return "W/\"" + DigestUtils.md5DigestAsHex(page.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * @return the epoch millis expected by {@link WebRequest#checkNotModified(String, long)}, -1 when unknown
+     */
+    public static long lastModified(Instant lastModified) {
+        return lastModified == null ? -1 : lastModified.toEpochMilli();
+    }
+
+    /**
+     * @return whether the request may be answered with a 304, worth checking before loading anything
+     */
+    public static boolean isConditional(WebRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    /**
+     * Strong comparison of {@code If-Match}, when sent, with the current version.
+     *
+     * @throws ResponseStatusException 412 when no ETag of {@code If-Match} is the current one
+     */
+    public static void checkMatch(WebRequest request, Long version) {
+        String ifMatch = request.getHeader(HttpHeaders.IF_MATCH);
+        if (ifMatch == null) {
+            return;
+        }
+        String current = etag(version);
+        for (String etag : ifMatch.split(",")) {
+            String candidate = etag.trim();
+            if (candidate.equals("*") || candidate.equals(current)) {
+                return;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "The book was modified, expected ETag " + current);
+    }
+}
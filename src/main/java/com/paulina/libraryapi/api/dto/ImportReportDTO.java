@@ -0,0 +1,20 @@
+package com.paulina.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportReportDTO {
+
+    private long imported;
+    private long rejected;
+    private List<ImportErrorDTO> errors;
+
+}
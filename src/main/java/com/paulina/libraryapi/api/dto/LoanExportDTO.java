@@ -0,0 +1,24 @@
+package com.paulina.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanExportDTO {
+
+    private Long id;
+    private String isbn;
+    private String title;
+    private String customer;
+    private String email;
+    private LocalDate loanDate;
+    private Boolean returned;
+
+}
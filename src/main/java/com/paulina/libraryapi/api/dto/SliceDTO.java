@@ -0,0 +1,21 @@
+package com.paulina.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SliceDTO<T> {
+
+    private List<T> content;
+    private int number;
+    private int size;
+    private boolean hasNext;
+
+}
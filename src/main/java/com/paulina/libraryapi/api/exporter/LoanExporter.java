@@ -0,0 +1,132 @@
+package com.paulina.libraryapi.api.exporter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.paulina.libraryapi.api.dto.LoanExportDTO;
+import com.paulina.libraryapi.api.dto.LoanFilterDTO;
+import com.paulina.libraryapi.api.mapper.LoanMapper;
+import com.paulina.libraryapi.service.LoanService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Writes loans to a response body while they are scrolled from the database, one CSV or NDJSON line per loan.
+ */
+@Component
+@Slf4j
+public class LoanExporter {
+
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String CSV = "text/csv";
+
+    static final String CSV_HEADER = "id,isbn,title,customer,email,loanDate,returned";
+
+    private final LoanService service;
+    private final LoanMapper loanMapper;
+    private final ObjectWriter loanWriter;
+    private final Duration timeout;
+
+    public LoanExporter(LoanService service, LoanMapper loanMapper, ObjectMapper objectMapper,
+                        @Value("${application.loans.export.timeout:PT1H}") Duration timeout) {
+        this.service = service;
+        this.loanMapper = loanMapper;
+        this.loanWriter = objectMapper.writerFor(LoanExportDTO.class);
+        this.timeout = timeout;
+    }
+
+    /**
+     * Allows the export streamed for the current request {@code application.loans.export.timeout}, instead of the
+     * timeout of the other async requests. Registered on the export requests only.
+     */
+    public CallableProcessingInterceptor timeoutInterceptor() {
+        return new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                if( request instanceof AsyncWebRequest ){
+                    ((AsyncWebRequest) request).setTimeout(timeout.toMillis());
+                }
+            }
+        };
+    }
+
+    public void exportNdjson(LoanFilterDTO filter, OutputStream body) throws IOException {
+        export(filter, body, (dto, writer) -> {
+            writer.write(loanWriter.writeValueAsString(dto));
+            writer.write('\n');
+        });
+    }
+
+    public void exportCsv(LoanFilterDTO filter, OutputStream body) throws IOException {
+        export(filter, body, (dto, writer) -> {
+            writer.write(String.valueOf(dto.getId()));
+            writer.write(',');
+            writer.write(csv(dto.getIsbn()));
+            writer.write(',');
+            writer.write(csv(dto.getTitle()));
+            writer.write(',');
+            writer.write(csv(dto.getCustomer()));
+            writer.write(',');
+            writer.write(csv(dto.getEmail()));
+            writer.write(',');
+            writer.write(dto.getLoanDate() == null ? "" : dto.getLoanDate().toString());
+            writer.write(',');
+            writer.write(dto.getReturned() == null ? "" : dto.getReturned().toString());
+            writer.write('\n');
+        }, CSV_HEADER);
+    }
+
+    private void export(LoanFilterDTO filter, OutputStream body, LineWriter lineWriter, String... header) throws IOException {
+        long start = System.currentTimeMillis();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+        for( String line : header ){
+            writer.write(line);
+            writer.write('\n');
+        }
+        long count;
+        try {
+            count = service.exportLoans(filter, loan -> {
+                try {
+                    lineWriter.write(loanMapper.toExportDto(loan), writer);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        writer.flush();
+        log.info(" exported {} loans in {} ms ", count, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Quotes the value when it holds a separator, a quote or a line break.
+     */
+    static String csv(String value) {
+        if( value == null ){
+            return "";
+        }
+        if( value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0 ){
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private interface LineWriter {
+        void write(LoanExportDTO dto, Writer writer) throws IOException;
+    }
+
+}
@@ -0,0 +1,271 @@
+package com.paulina.libraryapi.api.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.paulina.libraryapi.api.dto.BookDTO;
+import com.paulina.libraryapi.api.dto.ImportErrorDTO;
+import com.paulina.libraryapi.api.dto.ImportReportDTO;
+import com.paulina.libraryapi.api.mapper.BookMapper;
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.service.BookService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Imports books from a streamed NDJSON or CSV body. The body is read line by line, valid books are saved in chunks of
+ * {@code application.books.import.chunk-size}, each chunk in its own transaction, and every rejected line is reported
+ * by its number. CSV bodies start with a header naming the {@code title}, {@code author} and {@code isbn} columns;
+ * quoted values may not span lines.
+ */
+@Component
+@Slf4j
+public class BookImporter {
+
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String CSV = "text/csv";
+
+    static final String DUPLICATED_ISBN = "ISBN já cadastrado";
+    static final String MALFORMED_LINE = "Malformed line";
+
+    private static final int MAX_CHUNK_ATTEMPTS = 3;
+
+    private final BookService service;
+    private final BookMapper bookMapper;
+    private final Validator validator;
+    private final ObjectReader bookReader;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    public BookImporter(BookService service, BookMapper bookMapper, Validator validator, ObjectMapper objectMapper,
+                        @Value("${application.books.import.chunk-size:1000}") int chunkSize,
+                        @Value("${application.books.import.max-errors:1000}") int maxErrors) {
+        this.service = service;
+        this.bookMapper = bookMapper;
+        this.validator = validator;
+        this.bookReader = objectMapper.readerFor(BookDTO.class);
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    public ImportReportDTO importNdjson(InputStream body) throws IOException {
+        return importLines(reader(body), 0, bookReader::readValue);
+    }
+
+    public ImportReportDTO importCsv(InputStream body) throws IOException {
+        BufferedReader reader = reader(body);
+        String header = reader.readLine();
+        if( header == null ){
+            return new Report(maxErrors).toDto();
+        }
+        List<String> columns = split(header.replace("\uFEFF", "")).stream()
+                .map(column -> column.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toList());
+        int title = column(columns, "title");
+        int author = column(columns, "author");
+        int isbn = column(columns, "isbn");
+
+        return importLines(reader, 1, line -> {
+            List<String> values = split(line);
+            return BookDTO.builder()
+                    .title(value(values, title))
+                    .author(value(values, author))
+                    .isbn(value(values, isbn))
+                    .build();
+        });
+    }
+
+    private ImportReportDTO importLines(BufferedReader reader, long number, LineParser parser) throws IOException {
+        long start = System.currentTimeMillis();
+        Report report = new Report(maxErrors);
+        List<Book> chunk = new ArrayList<>(chunkSize);
+        List<Long> chunkLines = new ArrayList<>(chunkSize);
+        Set<String> chunkIsbns = new HashSet<>();
+
+        String line;
+        while( (line = reader.readLine()) != null ){
+            number++;
+            if( line.trim().isEmpty() ){
+                continue;
+            }
+
+            BookDTO dto;
+            try {
+                dto = parser.parse(line);
+            } catch (IOException | IllegalArgumentException ex) {
+                dto = null;
+            }
+            if( dto == null ){
+                report.reject(number, MALFORMED_LINE);
+                continue;
+            }
+
+            Set<ConstraintViolation<BookDTO>> violations = validator.validate(dto);
+            if( !violations.isEmpty() ){
+                report.reject(number, violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .toArray(String[]::new));
+                continue;
+            }
+            if( !chunkIsbns.add(dto.getIsbn()) ){
+                report.reject(number, DUPLICATED_ISBN);
+                continue;
+            }
+
+            Book book = bookMapper.toEntity(dto);
+            book.setId(null);
+            chunk.add(book);
+            chunkLines.add(number);
+            if( chunk.size() == chunkSize ){
+                save(chunk, chunkLines, report);
+                chunkIsbns.clear();
+            }
+        }
+        save(chunk, chunkLines, report);
+
+        log.info(" imported {} books, rejected {} lines in {} ms ", report.imported, report.rejected,
+                System.currentTimeMillis() - start);
+        return report.toDto();
+    }
+
+    private void save(List<Book> chunk, List<Long> chunkLines, Report report) {
+        if( chunk.isEmpty() ){
+            return;
+        }
+        Set<String> registered = importChunk(chunk);
+        for( int i = 0; i < chunk.size(); i++ ){
+            if( registered.contains(chunk.get(i).getIsbn()) ){
+                report.reject(chunkLines.get(i), DUPLICATED_ISBN);
+            } else {
+                report.imported++;
+            }
+        }
+        chunk.clear();
+        chunkLines.clear();
+    }
+
+    /**
+     * A book created meanwhile with one of the ISBNs of the chunk fails the unique index and rolls the chunk back:
+     * the chunk is saved again, its ISBNs checked again, so that book is reported as a duplicate.
+     */
+    private Set<String> importChunk(List<Book> chunk) {
+        for( int attempt = 1; ; attempt++ ){
+            try {
+                return service.importBooks(chunk);
+            } catch (DataIntegrityViolationException ex) {
+                if( attempt == MAX_CHUNK_ATTEMPTS ){
+                    throw ex;
+                }
+                log.info(" chunk of {} books rolled back by a concurrent create, retrying ", chunk.size());
+                // the rolled back persist left ids and versions on the books
+                chunk.forEach(book -> {
+                    book.setId(null);
+                    book.setVersion(null);
+                });
+            }
+        }
+    }
+
+    private static BufferedReader reader(InputStream body) {
+        return new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    private static int column(List<String> columns, String name) {
+        int index = columns.indexOf(name);
+        if( index < 0 ){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing CSV column: " + name);
+        }
+        return index;
+    }
+
+    private static String value(List<String> values, int index) {
+        return index < values.size() ? values.get(index).trim() : null;
+    }
+
+    /**
+     * Splits one CSV line on commas. Values may be quoted, with {@code ""} standing for a quote inside them.
+     */
+    static List<String> split(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for( int i = 0; i < line.length(); i++ ){
+            char c = line.charAt(i);
+            if( quoted ){
+                if( c != '"' ){
+                    value.append(c);
+                } else if( i + 1 < line.length() && line.charAt(i + 1) == '"' ){
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if( c == '"' ){
+                quoted = true;
+            } else if( c == ',' ){
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if( quoted ){
+            throw new IllegalArgumentException("Unterminated quoted value");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private interface LineParser {
+        BookDTO parse(String line) throws IOException;
+    }
+
+    /**
+     * Keeps the counters exact while holding at most {@code maxErrors} line errors.
+     */
+    private static class Report {
+
+        private final int maxErrors;
+        private final List<ImportErrorDTO> errors = new ArrayList<>();
+        private long imported;
+        private long rejected;
+
+        Report(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        void reject(long line, String... messages) {
+            rejected++;
+            if( errors.size() < maxErrors ){
+                errors.add(new ImportErrorDTO(line, Arrays.asList(messages)));
+            }
+        }
+
+        ImportReportDTO toDto() {
+            // duplicates found in the database are only known once their chunk is saved
+            errors.sort(Comparator.comparingLong(ImportErrorDTO::getLine));
+            return new ImportReportDTO(imported, rejected, errors);
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.paulina.libraryapi.api.mapper;
+
+import com.paulina.libraryapi.api.dto.BookDTO;
+import com.paulina.libraryapi.api.dto.SuggestionDTO;
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.projection.Suggestion;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.ReportingPolicy;
+
+@Mapper(unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface BookMapper {
+
+    BookDTO toDto(Book book);
+
+    @Mapping(target = "loans", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "lastModified", ignore = true)
+    Book toEntity(BookDTO dto);
+
+    SuggestionDTO toDto(Suggestion suggestion);
+}
@@ -0,0 +1,21 @@
+package com.paulina.libraryapi.api.mapper;
+
+import com.paulina.libraryapi.api.dto.LoanDTO;
+import com.paulina.libraryapi.api.dto.LoanExportDTO;
+import com.paulina.libraryapi.model.entity.Loan;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.ReportingPolicy;
+
+@Mapper(uses = BookMapper.class, unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface LoanMapper {
+
+    @Mapping(target = "isbn", source = "book.isbn")
+    @Mapping(target = "email", source = "customerEmail")
+    LoanDTO toDto(Loan loan);
+
+    @Mapping(target = "isbn", source = "book.isbn")
+    @Mapping(target = "title", source = "book.title")
+    @Mapping(target = "email", source = "customerEmail")
+    LoanExportDTO toExportDto(Loan loan);
+}
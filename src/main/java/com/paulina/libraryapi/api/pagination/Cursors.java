@@ -0,0 +1,61 @@
+package com.paulina.libraryapi.api.pagination;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursors: the sort keys of the last row of a page, joined and base64url encoded.
+ */
+public final class Cursors {
+
+    public static final int MAX_SIZE = 2000;
+
+    private static final String SEPARATOR = "|";
+
+    private Cursors() {
+    }
+
+    public static String encode(Object... keys) {
+        StringBuilder value = new StringBuilder();
+        for (Object key : keys) {
+            if (value.length() > 0) {
+                value.append(SEPARATOR);
+            }
+            value.append(key);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the {@code keys} sort keys of the cursor, or {@code null} for an empty cursor (first page)
+     */
+    public static String[] decode(String cursor, int keys) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] decoded = value.split("\\|", -1);
+            if (decoded.length != keys) {
+                throw invalid();
+            }
+            return decoded;
+        } catch (IllegalArgumentException ex) {
+            throw invalid();
+        }
+    }
+
+    public static int size(int size) {
+        if (size < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be greater than zero");
+        }
+        return Math.min(size, MAX_SIZE);
+    }
+
+    public static ResponseStatusException invalid() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+}
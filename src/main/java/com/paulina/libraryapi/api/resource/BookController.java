@@ -1,61 +1,101 @@
 package com.paulina.libraryapi.api.resource;
 
 
+import com.paulina.libraryapi.api.conditional.Validators;
 import com.paulina.libraryapi.api.dto.BookDTO;
+import com.paulina.libraryapi.api.dto.CursorPageDTO;
+import com.paulina.libraryapi.api.dto.ImportReportDTO;
 import com.paulina.libraryapi.api.dto.LoanDTO;
+import com.paulina.libraryapi.api.dto.SliceDTO;
+import com.paulina.libraryapi.api.dto.SuggestionDTO;
+import com.paulina.libraryapi.api.importer.BookImporter;
+import com.paulina.libraryapi.api.mapper.BookMapper;
+import com.paulina.libraryapi.api.mapper.LoanMapper;
+import com.paulina.libraryapi.api.pagination.Cursors;
 import com.paulina.libraryapi.model.entity.Book;
 import com.paulina.libraryapi.model.entity.Loan;
+import com.paulina.libraryapi.model.projection.BookVersion;
 import com.paulina.libraryapi.service.BookService;
 import com.paulina.libraryapi.service.LoanService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/books")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 @Api("Book API")
 @Slf4j
 public class BookController {
 
     private final BookService service;
-    private final ModelMapper modelMapper;
+    private final BookMapper bookMapper;
+    private final LoanMapper loanMapper;
     private final LoanService loanService;
+    private final BookImporter importer;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     @ApiOperation("Create a book")
     public BookDTO create( @RequestBody @Valid BookDTO dto ){
         log.info(" creating a book for isbn: {} ", dto.getIsbn());
-        Book entity = modelMapper.map( dto, Book.class );
+        Book entity = bookMapper.toEntity( dto );
         entity = service.save(entity);
-        return modelMapper.map(entity, BookDTO.class);
+        return bookMapper.toDto(entity);
     }
 
+    @PostMapping(value = "import", consumes = BookImporter.NDJSON)
+    @ApiOperation("Imports books from newline delimited JSON, reporting the rejected lines")
+    public ImportReportDTO importNdjson( InputStream body ) throws IOException {
+        log.info(" importing books from ndjson ");
+        return importer.importNdjson(body);
+    }
+
+    @PostMapping(value = "import", consumes = BookImporter.CSV)
+    @ApiOperation("Imports books from CSV with a title, author and isbn header, reporting the rejected lines")
+    public ImportReportDTO importCsv( InputStream body ) throws IOException {
+        log.info(" importing books from csv ");
+        return importer.importCsv(body);
+    }
+
+    /**
+     * Conditional requests are validated with the version alone: a 304 neither loads nor maps the book.
+     */
     @GetMapping("{id}")
     @ApiOperation("Get a book details by id")
-    public BookDTO get( @PathVariable Long id ){
+    public BookDTO get( @PathVariable Long id, WebRequest request ){
         log.info(" obtaining details for book id: {} ", id);
-        return service
-                .getById(id)
-                .map( book -> modelMapper.map(book, BookDTO.class)  )
-                .orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
+        if( Validators.isConditional(request) ){
+            BookVersion version = service.getVersion(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
+            if( request.checkNotModified(Validators.etag(version.getVersion()), Validators.lastModified(version.getLastModified())) ){
+                return null;
+            }
+        }
+        Book book = service.getById(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
+        request.checkNotModified(Validators.etag(book.getVersion()), Validators.lastModified(book.getLastModified()));
+        return bookMapper.toDto(book);
     }
 
     @DeleteMapping("{id}")
@@ -63,50 +103,117 @@ public class BookController {
     @ApiOperation("Deletes a book by id")
     public void delete(@PathVariable Long id){
         log.info(" deleting book of id: {} ", id);
-        Book book = service.getById(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
+        Book book = service.getForUpdate(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
         service.delete(book);
     }
 
+    /**
+     * With {@code If-Match}, only updates the version it names, 412 otherwise. An update racing another one
+     * fails on the version column with a 409. Changes its own copy of the book, never the cached one.
+     */
     @PutMapping("{id}")
     @ApiOperation("Updates a book")
-    public BookDTO update( @PathVariable Long id, @RequestBody @Valid BookDTO dto){
+    public ResponseEntity<BookDTO> update( @PathVariable Long id, @RequestBody @Valid BookDTO dto, WebRequest request){
         log.info(" updating book of id: {} ", id);
-        return service.getById(id).map( book -> {
+        return service.getForUpdate(id).map( book -> {
 
+            Validators.checkMatch(request, book.getVersion());
             book.setAuthor(dto.getAuthor());
             book.setTitle(dto.getTitle());
             book = service.update(book);
-            return modelMapper.map(book, BookDTO.class);
+            return ResponseEntity.ok()
+                    .eTag(Validators.etag(book.getVersion()))
+                    .lastModified(Validators.lastModified(book.getLastModified()))
+                    .body(bookMapper.toDto(book));
 
         }).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
     }
 
     @GetMapping
     @ApiOperation("Lists books by params")
-    public Page<BookDTO> find( BookDTO dto, Pageable pageRequest ){
-        Book filter = modelMapper.map(dto, Book.class);
+    public Page<BookDTO> find( BookDTO dto, Pageable pageRequest, WebRequest request ){
+        Book filter = bookMapper.toEntity(dto);
         Page<Book> result = service.find(filter, pageRequest);
+        if( request.checkNotModified(Validators.weakEtag(result.getContent(), result.getTotalElements())) ){
+            return null;
+        }
         List<BookDTO> list = result.getContent()
                 .stream()
-                .map(entity -> modelMapper.map(entity, BookDTO.class))
+                .map(bookMapper::toDto)
                 .collect(Collectors.toList());
 
         return new PageImpl<BookDTO>( list, pageRequest, result.getTotalElements() );
     }
 
+    @GetMapping("search")
+    @ApiOperation("Searches books by the words of their title, author and isbn, best matches first")
+    public List<BookDTO> search( @RequestParam String q, @RequestParam(defaultValue = "20") int size ){
+        return service.search(q, Cursors.size(size))
+                .stream()
+                .map(bookMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("suggest")
+    @ApiOperation("Completes a prefix with the titles and authors of the catalog, most loaned first")
+    public List<SuggestionDTO> suggest( @RequestParam String prefix, @RequestParam(defaultValue = "10") int size ){
+        return service.suggest(prefix, Cursors.size(size))
+                .stream()
+                .map(bookMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping(params = {"count=false", "!after"})
+    @ApiOperation("Lists books by params without counting the total of elements")
+    public SliceDTO<BookDTO> findSlice( BookDTO dto, Pageable pageRequest, WebRequest request ){
+        Slice<Book> result = service.findSlice(bookMapper.toEntity(dto), pageRequest);
+        if( request.checkNotModified(Validators.weakEtag(result.getContent(), result.hasNext())) ){
+            return null;
+        }
+        List<BookDTO> list = result.getContent()
+                .stream()
+                .map(bookMapper::toDto)
+                .collect(Collectors.toList());
+
+        return new SliceDTO<BookDTO>( list, result.getNumber(), result.getSize(), result.hasNext() );
+    }
+
+    @GetMapping(params = "after")
+    @ApiOperation("Lists books by params after a cursor, ordered by id")
+    public CursorPageDTO<BookDTO> findAfter( BookDTO dto, @RequestParam String after, @RequestParam(defaultValue = "20") int size,
+                                             WebRequest request ){
+        int pageSize = Cursors.size(size);
+        Long afterId = null;
+        String[] keys = Cursors.decode(after, 1);
+        if( keys != null ){
+            try {
+                afterId = Long.valueOf(keys[0]);
+            } catch (NumberFormatException ex) {
+                throw Cursors.invalid();
+            }
+        }
+        List<Book> result = service.findAfter(bookMapper.toEntity(dto), afterId, pageSize + 1);
+
+        String next = null;
+        if( result.size() > pageSize ){
+            result = result.subList(0, pageSize);
+            next = Cursors.encode(result.get(pageSize - 1).getId());
+        }
+        if( request.checkNotModified(Validators.weakEtag(result, next)) ){
+            return null;
+        }
+        List<BookDTO> list = result.stream().map(bookMapper::toDto).collect(Collectors.toList());
+        return new CursorPageDTO<BookDTO>(list, pageSize, next);
+    }
+
     @GetMapping("{id}/loans")
     public Page<LoanDTO> loansByBook( @PathVariable Long id, Pageable pageable ){
         Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
         Page<Loan> result = loanService.getLoansByBook(book, pageable);
         List<LoanDTO> list = result.getContent()
                 .stream()
-                .map(loan -> {
-                    Book loanBook = loan.getBook();
-                    BookDTO bookDTO = modelMapper.map(loanBook, BookDTO.class);
-                    LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
-                    loanDTO.setBook(bookDTO);
-                    return loanDTO;
-                }).collect(Collectors.toList());
+                .map(loanMapper::toDto)
+                .collect(Collectors.toList());
         return new PageImpl<LoanDTO>(list, pageable, result.getTotalElements());
     }
 
@@ -1,35 +1,50 @@
 package com.paulina.libraryapi.api.resource;
 
 
-import com.paulina.libraryapi.api.dto.BookDTO;
+import com.paulina.libraryapi.api.dto.CursorPageDTO;
 import com.paulina.libraryapi.api.dto.LoanDTO;
 import com.paulina.libraryapi.api.dto.LoanFilterDTO;
 import com.paulina.libraryapi.api.dto.ReturnedLoanDTO;
+import com.paulina.libraryapi.api.dto.SliceDTO;
+import com.paulina.libraryapi.api.exporter.LoanExporter;
+import com.paulina.libraryapi.api.mapper.LoanMapper;
+import com.paulina.libraryapi.api.pagination.Cursors;
 import com.paulina.libraryapi.model.entity.Book;
 import com.paulina.libraryapi.model.entity.Loan;
 import com.paulina.libraryapi.service.BookService;
 import com.paulina.libraryapi.service.LoanService;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/loans")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 public class LoanController {
     private final LoanService service;
     private final BookService bookService;
-    private final ModelMapper modelMapper;
+    private final LoanMapper loanMapper;
+    private final LoanExporter exporter;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -43,9 +58,22 @@ public class LoanController {
         return entity.getId();
     }
 
+    /**
+     * A return is a single conditional update: 404 for an unknown loan, 409 when it was already returned.
+     * Reopening a loan still loads and saves it, failing with 409 when it is modified meanwhile
+     * and with 400 when its book is loaned out again, like a new loan of that book.
+     */
     @PatchMapping("{id}")
     public void returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto){
-        Loan loan = service.getById(id).orElseThrow(() -> new ResponseStatusException( HttpStatus.NOT_FOUND));;
+        if( Boolean.TRUE.equals(dto.getReturned()) ){
+            try {
+                service.returnLoan(id);
+            } catch (EmptyResultDataAccessException ex) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            }
+            return;
+        }
+        Loan loan = service.getForUpdate(id).orElseThrow(() -> new ResponseStatusException( HttpStatus.NOT_FOUND));
 
         loan.setReturned(dto.getReturned());
 
@@ -55,59 +83,68 @@ public class LoanController {
     @GetMapping
     public Page<LoanDTO> find(LoanFilterDTO dto, Pageable pageRequest){
         Page<Loan> result = service.find(dto, pageRequest);
-        List<LoanDTO> loans = result.getContent().stream().map(entity -> {
-            Book book = entity.getBook();
-            BookDTO bookDTO = modelMapper.map(book, BookDTO.class);
-            LoanDTO loanDTO = modelMapper.map(entity, LoanDTO.class);
-            loanDTO.setBook(bookDTO);
-            return loanDTO;
-        }).collect(Collectors.toList());
+        List<LoanDTO> loans = result.getContent().stream().map(loanMapper::toDto).collect(Collectors.toList());
 
         return new PageImpl<LoanDTO>(loans, pageRequest, result.getTotalElements());
     }
 
-}
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
+    @GetMapping(params = {"count=false", "!after"})
+    public SliceDTO<LoanDTO> findSlice(LoanFilterDTO dto, Pageable pageRequest){
+        Slice<Loan> result = service.findSlice(dto, pageRequest);
+        List<LoanDTO> loans = result.getContent().stream().map(loanMapper::toDto).collect(Collectors.toList());
 
+        return new SliceDTO<LoanDTO>(loans, result.getNumber(), result.getSize(), result.hasNext());
+    }
 
+    @GetMapping(params = "after")
+    public CursorPageDTO<LoanDTO> findAfter(LoanFilterDTO dto, @RequestParam String after, @RequestParam(defaultValue = "20") int size){
+        int pageSize = Cursors.size(size);
+        LocalDate afterLoanDate = null;
+        Long afterId = null;
+        String[] keys = Cursors.decode(after, 2);
+        if( keys != null ){
+            try {
+                afterLoanDate = LocalDate.parse(keys[0]);
+                afterId = Long.valueOf(keys[1]);
+            } catch (DateTimeParseException | NumberFormatException ex) {
+                throw Cursors.invalid();
+            }
+        }
+        List<Loan> result = service.findAfter(dto, afterLoanDate, afterId, pageSize + 1);
+
+        String next = null;
+        if( result.size() > pageSize ){
+            result = result.subList(0, pageSize);
+            Loan last = result.get(pageSize - 1);
+            next = Cursors.encode(last.getLoanDate(), last.getId());
+        }
+        List<LoanDTO> loans = result.stream().map(loanMapper::toDto).collect(Collectors.toList());
+        return new CursorPageDTO<LoanDTO>(loans, pageSize, next);
+    }
 
+    /**
+     * Streamed by Spring MVC from an async request, allowed {@code application.loans.export.timeout} instead of the
+     * timeout of the other async requests.
+     */
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> export(LoanFilterDTO dto, @RequestParam(defaultValue = "csv") String format,
+                                                        HttpServletRequest request){
+        String contentType;
+        StreamingResponseBody body;
+        if( "csv".equals(format) ){
+            contentType = LoanExporter.CSV;
+            body = out -> exporter.exportCsv(dto, out);
+        } else if( "ndjson".equals(format) ){
+            contentType = LoanExporter.NDJSON;
+            body = out -> exporter.exportNdjson(dto, out);
+        } else {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid export format");
+        }
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(LoanExporter.class, exporter.timeoutInterceptor());
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(contentType))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=loans." + format)
+                .body(body);
+    }
 
+}
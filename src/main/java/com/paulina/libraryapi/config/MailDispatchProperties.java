@@ -0,0 +1,52 @@
+package com.paulina.libraryapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Tuning of the late-loan mail dispatch, see {@code EmailServiceImp}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.mail.dispatch")
+public class MailDispatchProperties {
+
+    /**
+     * Recipients addressed in Bcc by a single message.
+     */
+    private int recipientsPerMessage = 50;
+
+    /**
+     * Messages sent over one SMTP connection before it is closed.
+     */
+    private int messagesPerConnection = 20;
+
+    /**
+     * SMTP connections open in parallel.
+     */
+    private int connections = 4;
+
+    /**
+     * Connection batches waiting for a free connection; when full the caller sends the batch itself.
+     */
+    private int queueCapacity = 100;
+
+    /**
+     * Attempts per message, including the first one.
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * Wait before the first retry, doubled on every further one.
+     */
+    private Duration backoff = Duration.ofSeconds(1);
+
+    /**
+     * How long shutdown waits for queued batches to be sent.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+}
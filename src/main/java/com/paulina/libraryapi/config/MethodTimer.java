@@ -0,0 +1,66 @@
+package com.paulina.libraryapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every call to the methods of the given interfaces, whatever bean implements them, tagged with the interface
+ * and the method. One timer per method, created on its first call.
+ */
+class MethodTimer extends StaticMethodMatcherPointcut implements MethodInterceptor {
+
+    private final String name;
+    private final List<Class<?>> types;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+
+    /**
+     * The registry is looked up on the first call: advisors are created before the registry is configured.
+     */
+    MethodTimer(String name, ObjectProvider<MeterRegistry> meterRegistry, Class<?>... types) {
+        this.name = name;
+        this.meterRegistry = meterRegistry;
+        this.types = Arrays.asList(types);
+    }
+
+    @Override
+    public boolean matches(Method method, Class<?> targetClass) {
+        return type(method, targetClass) != null;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Timer timer = timers.computeIfAbsent(invocation.getMethod(), method -> Timer.builder(name)
+                .tag("class", type(method, invocation.getThis().getClass()).getSimpleName())
+                .tag("method", method.getName())
+                .register(meterRegistry.getObject()));
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Class<?> type(Method method, Class<?> targetClass) {
+        for (Class<?> type : types) {
+            if (type.isAssignableFrom(targetClass)
+                    && ReflectionUtils.findMethod(type, method.getName(), method.getParameterTypes()) != null) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
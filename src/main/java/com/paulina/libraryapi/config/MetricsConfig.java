@@ -0,0 +1,52 @@
+package com.paulina.libraryapi.config;
+
+import com.paulina.libraryapi.api.mapper.BookMapper;
+import com.paulina.libraryapi.api.mapper.LoanMapper;
+import com.paulina.libraryapi.service.BookService;
+import com.paulina.libraryapi.service.LoanService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+
+/**
+ * Timers on the layers below the controllers, whose routes are timed by {@code http.server.requests}:
+ * {@code library.service} for every method of {@link BookService} and {@link LoanService}, cache hits included,
+ * and, in profiling runs, {@code library.mapping} for every entity to DTO mapping. Histograms and SLO buckets are set
+ * per meter name with the {@code management.metrics.distribution} properties.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Outermost, so a call answered by the cache is timed as well.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor serviceTimerAdvisor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return advisor(new MethodTimer("library.service", meterRegistry, BookService.class, LoanService.class));
+    }
+
+    /**
+     * Mapping a row costs less than timing it, so this one is off unless a profiling run turns it on, see the
+     * {@code profiling} profile.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    @ConditionalOnProperty(value = "application.metrics.mapping.enabled", havingValue = "true")
+    public static Advisor mappingTimerAdvisor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return advisor(new MethodTimer("library.mapping", meterRegistry, BookMapper.class, LoanMapper.class));
+    }
+
+    private static Advisor advisor(MethodTimer timer) {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(timer, timer);
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+}
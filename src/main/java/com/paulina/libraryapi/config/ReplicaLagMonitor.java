@@ -0,0 +1,78 @@
+package com.paulina.libraryapi.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Writes a heartbeat on the primary and reads it back on the replica, on every node. The replica is in sync when it
+ * has the heartbeat of the previous check; otherwise its lag is the age of the heartbeat it has. Until the first check
+ * shows a lag below {@code max-lag}, and whenever the replica cannot be read, reads go to the primary.
+ */
+@Slf4j
+class ReplicaLagMonitor {
+
+    private static final String READ = "select beat from replica_heartbeat where id = 1";
+    private static final String WRITE = "update replica_heartbeat set beat = ? where id = 1";
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final Duration maxLag;
+
+    private Instant lastBeat;
+    private volatile Duration lag;
+    private volatile boolean replicaUsable;
+
+    ReplicaLagMonitor(JdbcTemplate primary, JdbcTemplate replica, Duration maxLag) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLag = maxLag;
+    }
+
+    boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    /**
+     * @return the lag seen by the last check, null when the replica could not be read
+     */
+    Duration getLag() {
+        return lag;
+    }
+
+    @Scheduled(initialDelayString = "${application.datasource.replica.lag-check-interval:PT1S}",
+            fixedDelayString = "${application.datasource.replica.lag-check-interval:PT1S}")
+    synchronized void check() {
+        Instant now = Instant.now();
+        try {
+            Instant beat = replica.queryForObject(READ, Timestamp.class).toInstant();
+            lag = lastBeat != null && !beat.isBefore(lastBeat) ? Duration.ZERO : max(Duration.between(beat, now), Duration.ZERO);
+        } catch (DataAccessException ex) {
+            log.warn(" cannot read the replica heartbeat: {} ", ex.getMessage());
+            lag = null;
+        }
+        boolean usable = lag != null && lag.compareTo(maxLag) <= 0;
+        if (usable != replicaUsable) {
+            log.info(usable ? " reading from the replica, lag {} " : " reading from the primary, replica lag {} ", lag);
+        }
+        replicaUsable = usable;
+
+        try {
+            // truncated like the column, so the replica compares equal once it has it
+            Instant next = Instant.ofEpochMilli(now.toEpochMilli());
+            primary.update(WRITE, Timestamp.from(next));
+            lastBeat = next;
+        } catch (DataAccessException ex) {
+            log.warn(" cannot write the replica heartbeat: {} ", ex.getMessage());
+        }
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+}
@@ -0,0 +1,34 @@
+package com.paulina.libraryapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * The read replica, see {@link ReplicaRoutingConfig}. Its pool is tuned with the
+ * {@code application.datasource.replica.hikari} properties, as the primary one is with {@code spring.datasource.hikari}.
+ */
+@Data
+@ConfigurationProperties(prefix = "application.datasource.replica")
+public class ReplicaProperties {
+
+    /**
+     * JDBC url of the replica; without it every statement goes to {@code spring.datasource.url}.
+     */
+    private String url;
+
+    private String username;
+
+    private String password;
+
+    /**
+     * Replication lag above which reads go back to the primary, until the replica catches up.
+     */
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    /**
+     * Time between two heartbeats, so also how long a lagging replica may still be read.
+     */
+    private Duration lagCheckInterval = Duration.ofSeconds(1);
+}
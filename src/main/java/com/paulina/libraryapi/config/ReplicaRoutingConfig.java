@@ -0,0 +1,90 @@
+package com.paulina.libraryapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * With {@code application.datasource.replica.url} set, read-only transactions read from a replica pool: the searches
+ * and listings of {@code BookServiceImp} and {@code LoanServiceImp}, and the late-loan scan of the notification job
+ * through {@code LoanService.getLateLoans}. Everything else goes to the primary pool of {@code spring.datasource}:
+ * writes, Flyway, the rest of the jobs, the cached book lookups and the reads an update depends on. Reads go back to
+ * the primary while the replica lags more than {@code max-lag}, see {@link ReplicaLagMonitor}.
+ * <p>
+ * A read-only transaction may not see a write made just before it on the primary, up to {@code max-lag} earlier: the
+ * daily late-loan scan may miss a loan updated within the last {@code max-lag}.
+ */
+@Configuration
+@EnableConfigurationProperties(ReplicaProperties.class)
+@ConditionalOnProperty(prefix = "application.datasource.replica", name = "url")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(ReplicaRoutingDataSource.PRIMARY);
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("application.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(ReplicaProperties properties) {
+        HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(properties.getUrl()).username(properties.getUsername()).password(properties.getPassword()).build();
+        dataSource.setPoolName(ReplicaRoutingDataSource.REPLICA);
+        return dataSource;
+    }
+
+    /**
+     * Routes the data source Flyway migrates through, so it does not wait for the migration: a check failing on a
+     * missing heartbeat table only keeps the reads on the primary.
+     */
+    @Bean
+    ReplicaLagMonitor replicaLagMonitor(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource,
+                                        ReplicaProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(new JdbcTemplate(primaryDataSource),
+                new JdbcTemplate(replicaDataSource), properties.getMaxLag());
+        meterRegistry.ifAvailable(registry -> Gauge.builder("library.replica.lag", monitor,
+                        m -> m.getLag() == null ? Double.NaN : m.getLag().toMillis() / 1000.0)
+                .description("Replication lag seen by the last heartbeat, NaN when the replica cannot be read")
+                .baseUnit("seconds")
+                .register(registry));
+        return monitor;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor) {
+        return new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primaryDataSource, replicaDataSource, replicaLagMonitor));
+    }
+
+    /**
+     * Spring holds a session's connection until the session closes, and with open-in-view the session lives for the
+     * whole request: a write following a read-only lookup would reuse the replica connection. Released after every
+     * transaction instead, each transaction is routed on its own.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+}
@@ -0,0 +1,32 @@
+package com.paulina.libraryapi.config;
+
+import net.javacrumbs.shedlock.core.DefaultLockingTaskExecutor;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.LockingTaskExecutor;
+import net.javacrumbs.shedlock.provider.jdbctemplate.JdbcTemplateLockProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Scheduled jobs run on every node, so they take a lease in the {@code shedlock} table first. The lease times come
+ * from the database clock, so nodes with skewed clocks still agree on when a lease expires.
+ */
+@Configuration
+public class SchedulingConfig {
+
+    @Bean
+    public LockProvider lockProvider(DataSource dataSource){
+        return new JdbcTemplateLockProvider(JdbcTemplateLockProvider.Configuration.builder()
+                .withJdbcTemplate(new JdbcTemplate(dataSource))
+                .usingDbTime()
+                .build());
+    }
+
+    @Bean
+    public LockingTaskExecutor lockingTaskExecutor(LockProvider lockProvider){
+        return new DefaultLockingTaskExecutor(lockProvider);
+    }
+}
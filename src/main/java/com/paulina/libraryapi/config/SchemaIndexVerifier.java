@@ -0,0 +1,124 @@
+package com.paulina.libraryapi.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Fails the startup when the indexes the repository queries rely on are missing, instead of
+ * silently degrading every lookup to a full table scan.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@DependsOnDatabaseInitialization
+@ConditionalOnProperty(value = "application.schema.verify-indexes", havingValue = "true", matchIfMissing = true)
+public class SchemaIndexVerifier implements InitializingBean {
+
+    static final List<ExpectedIndex> EXPECTED_INDEXES = Arrays.asList(
+            new ExpectedIndex("book", true, "isbn"),
+            new ExpectedIndex("loan", false, "book_id", "returned"),
+            new ExpectedIndex("loan", false, "loan_date", "returned"),
+            new ExpectedIndex("loan", false, "customer"),
+            new ExpectedIndex("loan", false, "customer_email", "id"),
+            new ExpectedIndex("notification_outbox", true, "notification_date", "customer_email"),
+            new ExpectedIndex("notification_outbox", false, "status", "id"),
+            new ExpectedIndex("notification_outbox", false, "customer_email", "status")
+    );
+
+    private final DataSource dataSource;
+
+    @Override
+    public void afterPropertiesSet() throws SQLException {
+        List<ExpectedIndex> missing = findMissingIndexes(dataSource);
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Missing database indexes: " + missing);
+        }
+        log.info(" verified {} database indexes ", EXPECTED_INDEXES.size());
+    }
+
+    static List<ExpectedIndex> findMissingIndexes(DataSource dataSource) throws SQLException {
+        List<ExpectedIndex> missing = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            Map<String, Map<String, Index>> indexesByTable = new HashMap<>();
+            for (ExpectedIndex expected : EXPECTED_INDEXES) {
+                Map<String, Index> indexes = indexesByTable.computeIfAbsent(expected.table, table -> readIndexes(metaData, table));
+                if (indexes.values().stream().noneMatch(expected::isSatisfiedBy)) {
+                    missing.add(expected);
+                }
+            }
+        }
+        return missing;
+    }
+
+    private static Map<String, Index> readIndexes(DatabaseMetaData metaData, String table) {
+        Map<String, Index> indexes = new HashMap<>();
+        try {
+            String tableName = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase() : table;
+            try (ResultSet rs = metaData.getIndexInfo(null, null, tableName, false, true)) {
+                while (rs.next()) {
+                    String name = rs.getString("INDEX_NAME");
+                    String column = rs.getString("COLUMN_NAME");
+                    if (name == null || column == null) {
+                        continue;
+                    }
+                    Index index = indexes.computeIfAbsent(name, key -> new Index());
+                    index.unique = index.unique || !rs.getBoolean("NON_UNIQUE");
+                    index.columns.put(rs.getInt("ORDINAL_POSITION"), column.toLowerCase());
+                }
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Could not read the indexes of table " + table, ex);
+        }
+        return indexes;
+    }
+
+    private static final class Index {
+        private boolean unique;
+        private final Map<Integer, String> columns = new TreeMap<>();
+    }
+
+    static final class ExpectedIndex {
+        private final String table;
+        private final boolean unique;
+        private final List<String> columns;
+
+        ExpectedIndex(String table, boolean unique, String... columns) {
+            this.table = table;
+            this.unique = unique;
+            this.columns = Arrays.asList(columns);
+        }
+
+        /**
+         * An index serves the expected one when its leading columns are the expected columns.
+         */
+        private boolean isSatisfiedBy(Index index) {
+            List<String> leading = new ArrayList<>(index.columns.values());
+            if (leading.size() < columns.size() || (unique && !index.unique)) {
+                return false;
+            }
+            return leading.subList(0, columns.size()).equals(columns);
+        }
+
+        @Override
+        public String toString() {
+            return (unique ? "unique " : "") + table + columns;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.paulina.libraryapi.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads looked up by reflection: the application is compiled for Java 8 and they exist from Java 21 on,
+ * or from Java 19 with {@code --enable-preview}.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean available() {
+        try {
+            factory("probe-").newThread(() -> { });
+            return true;
+        } catch (IllegalStateException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * A factory of virtual threads named {@code prefix0}, {@code prefix1}...
+     *
+     * @throws IllegalStateException when the running JVM has no virtual threads
+     */
+    public static ThreadFactory factory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (NoSuchMethodException | ClassNotFoundException | IllegalAccessException ex) {
+            throw unavailable(ex);
+        } catch (InvocationTargetException ex) {
+            // Java 19 and 20 without --enable-preview
+            throw unavailable(ex.getCause());
+        }
+    }
+
+    public static boolean isVirtual(Thread thread) {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+            return false;
+        }
+    }
+
+    private static IllegalStateException unavailable(Throwable cause) {
+        return new IllegalStateException("Virtual threads need Java 21 or later, running on Java "
+                + System.getProperty("java.version"), cause);
+    }
+}
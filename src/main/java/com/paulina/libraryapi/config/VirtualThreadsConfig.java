@@ -0,0 +1,53 @@
+package com.paulina.libraryapi.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskSchedulerCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+/**
+ * Opt-in mode, see {@code application-virtual-threads.properties}: Tomcat requests, async requests and scheduled
+ * jobs run on virtual threads instead of pooled platform threads. A request blocked on JDBC then costs a few
+ * hundred bytes of heap instead of a platform thread, so concurrency is no longer capped by
+ * {@code server.tomcat.threads.max} but by the connection pool, which must be sized for it.
+ * <p>
+ * The mail dispatch keeps its platform pool: its size is the number of SMTP connections, not a thread budget.
+ * Fails the startup on a JVM without virtual threads rather than silently serving on platform threads.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(value = "application.threads.virtual", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    /**
+     * A new virtual thread per connection task; Tomcat ignores its own pool settings once given an executor.
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsProtocolHandlerCustomizer() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(VirtualThreads.factory("http-"));
+        log.info(" serving requests on virtual threads ");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    /**
+     * Replaces the pooled {@code applicationTaskExecutor}, used by Spring MVC for streamed and async responses.
+     */
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new SimpleAsyncTaskExecutor(VirtualThreads.factory("task-"));
+    }
+
+    /**
+     * The scheduler still pools its threads, but a job blocked on the database or on SMTP no longer holds a carrier.
+     */
+    @Bean
+    public TaskSchedulerCustomizer virtualThreadsTaskSchedulerCustomizer() {
+        return scheduler -> scheduler.setThreadFactory(VirtualThreads.factory("scheduling-"));
+    }
+}
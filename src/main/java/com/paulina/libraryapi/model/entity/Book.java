@@ -3,9 +3,13 @@ package com.paulina.libraryapi.model.entity;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import javax.persistence.*;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 @Data
@@ -18,7 +22,8 @@ public class Book {
 
     @Id
     @Column
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Long id;
 
     @Column
@@ -30,6 +35,27 @@ public class Book {
     @Column
     private String isbn;
 
+    /**
+     * Incremented on every update, a stale update fails instead of overwriting. Also the strong ETag of the book.
+     */
+    @Version
+    @Column
+    private Long version;
+
+    @Column(name = "last_modified")
+    private Instant lastModified;
+
     @OneToMany( mappedBy = "book")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<Loan> loans;
-}
\ No newline at end of file
+
+    /**
+     * In millis, as stored: the instance and the row give the same validators.
+     */
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+}
@@ -17,7 +17,8 @@ import java.time.LocalDate;
 public class Loan {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Long id;
 
     @Column
@@ -34,4 +35,11 @@ public class Loan {
     @Column
     private Boolean returned;
 
+    /**
+     * Incremented on every update, including the returns of {@code LoanRepository.markReturned}.
+     */
+    @Version
+    @Column
+    private Long version;
+
 }
@@ -0,0 +1,41 @@
+package com.paulina.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(name = "notification_outbox")
+public class Notification {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_seq")
+    @SequenceGenerator(name = "notification_seq", sequenceName = "notification_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "customer_email")
+    private String customerEmail;
+
+    @Column
+    private LocalDate notificationDate;
+
+    @Column
+    @Enumerated(EnumType.STRING)
+    private NotificationStatus status;
+
+    @Column
+    private int attempts;
+
+    @Column
+    private LocalDateTime sentAt;
+
+}
@@ -0,0 +1,7 @@
+package com.paulina.libraryapi.model.entity;
+
+public enum NotificationStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
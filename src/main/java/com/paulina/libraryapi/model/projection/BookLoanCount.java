@@ -0,0 +1,18 @@
+package com.paulina.libraryapi.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * How many times a book was loaned, read without loading the loans.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookLoanCount {
+
+    private Long bookId;
+    private long loans;
+
+}
@@ -0,0 +1,20 @@
+package com.paulina.libraryapi.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * The validators of a book, read without loading the book to answer conditional requests.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookVersion {
+
+    private Long version;
+    private Instant lastModified;
+
+}
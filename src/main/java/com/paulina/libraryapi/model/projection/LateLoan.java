@@ -0,0 +1,20 @@
+package com.paulina.libraryapi.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The columns of an overdue loan the late-loan mails need, read without loading the entities.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LateLoan {
+
+    private Long id;
+    private String customer;
+    private String customerEmail;
+    private String bookTitle;
+
+}
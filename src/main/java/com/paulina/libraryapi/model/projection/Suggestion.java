@@ -0,0 +1,22 @@
+package com.paulina.libraryapi.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A title or author completing a typed prefix, with the number of loans of its books.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Suggestion {
+
+    public static final String TITLE = "title";
+    public static final String AUTHOR = "author";
+
+    private String text;
+    private String field;
+    private long loans;
+
+}
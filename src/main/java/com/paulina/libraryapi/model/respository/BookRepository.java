@@ -1,14 +1,43 @@
 package com.paulina.libraryapi.model.respository;
 
 import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.projection.BookVersion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface BookRepository extends JpaRepository<Book, Long> {
 
+    /**
+     * Same matching as the {@code Example} search: ignore case, containing, null values ignored.
+     */
+    String FILTER = "( :title is null or lower(b.title) like lower(concat('%', :title, '%')) ) " +
+            "and ( :author is null or lower(b.author) like lower(concat('%', :author, '%')) ) " +
+            "and ( :isbn is null or lower(b.isbn) like lower(concat('%', :isbn, '%')) ) ";
+
     boolean existsByIsbn(String isbn);
 
     Optional<Book> findByIsbn(String isbn);
 
+    @Query("select new com.paulina.libraryapi.model.projection.BookVersion(b.version, b.lastModified) from Book b where b.id = :id")
+    Optional<BookVersion> findVersionById(@Param("id") Long id);
+
+    @Query("select b.isbn from Book b where b.isbn in :isbns")
+    Set<String> findIsbnsIn(@Param("isbns") Collection<String> isbns);
+
+    @Query("select b from Book b where b.id > :id and " + FILTER + "order by b.id")
+    List<Book> findNextByFilter(@Param("title") String title, @Param("author") String author, @Param("isbn") String isbn,
+                                @Param("id") Long id, Pageable limit);
+
+    @Query("select b from Book b where " + FILTER)
+    Slice<Book> findSliceByFilter(@Param("title") String title, @Param("author") String author, @Param("isbn") String isbn,
+                                  Pageable pageable);
+
 }
@@ -2,26 +2,96 @@ package com.paulina.libraryapi.model.respository;
 
 import com.paulina.libraryapi.model.entity.Book;
 import com.paulina.libraryapi.model.entity.Loan;
+import com.paulina.libraryapi.model.projection.BookLoanCount;
+import com.paulina.libraryapi.model.projection.LateLoan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface LoanRepository extends JpaRepository<Loan, Long> {
 
+    /**
+     * Rows fetched per round trip by {@link #streamByBookISBNOrCustomer}.
+     */
+    int EXPORT_FETCH_SIZE = 500;
+
     @Query(value = " select case when ( count(l.id) > 0 ) then true else false end from Loan l where l.book = :book and ( l.returned is null or l.returned is false  )")
     boolean existsByBookAndNotReturned( @Param("book") Book book);
 
-    @Query( value = "select l from Loan as l join l.book as b where b.isbn = :isbn or l.customer = :customer")
+    @Query( value = "select l from Loan as l join fetch l.book as b where b.isbn = :isbn or l.customer = :customer",
+            countQuery = "select count(l) from Loan as l join l.book as b where b.isbn = :isbn or l.customer = :customer")
     Page<Loan> findByBookISBNOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageRequest);
 
+    @Query( value = "select l from Loan as l join fetch l.book as b where b.isbn = :isbn or l.customer = :customer")
+    Slice<Loan> findSliceByBookISBNOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageRequest);
+
+    @Query( value = "select l from Loan as l join fetch l.book as b where ( b.isbn = :isbn or l.customer = :customer ) order by l.loanDate, l.id")
+    List<Loan> findFirstByBookISBNOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable limit);
+
+    @Query( value = "select l from Loan as l join fetch l.book as b where ( b.isbn = :isbn or l.customer = :customer ) " +
+            "and ( l.loanDate > :loanDate or ( l.loanDate = :loanDate and l.id > :id ) ) order by l.loanDate, l.id")
+    List<Loan> findNextByBookISBNOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer,
+                                            @Param("loanDate") LocalDate loanDate, @Param("id") Long id, Pageable limit);
+
+    /**
+     * Forward-only scroll over the loans matching the filter, or over all loans when no filter is given.
+     * Must be consumed inside a transaction and closed.
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")
+    })
+    @Query( value = "select l from Loan as l join fetch l.book as b " +
+            "where ( :isbn is null and :customer is null ) or b.isbn = :isbn or l.customer = :customer order by l.id")
+    Stream<Loan> streamByBookISBNOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer);
+
+    @EntityGraph(attributePaths = "book")
     Page<Loan> findByBook(Book book, Pageable pageable);
 
     @Query("select l from Loan l where l.loanDate <= :threeDaysAgo and ( l.returned is null or l.returned is false)")
     List<Loan> findByLoanDateLessThanAndNotReturned(LocalDate threeDaysAgo);
+
+    /**
+     * Overdue loans with an email, after the (email, id) key, in the order of ix_loan_customer_email_id.
+     * The key condition is written as a range on the email so the index is walked from the key on.
+     * With more than one partition only the emails hashing to {@code partition} are read, see
+     * {@link NotificationRepository#PARTITION_CONDITION}.
+     */
+    @Query("select new com.paulina.libraryapi.model.projection.LateLoan(l.id, l.customer, l.customerEmail, b.title) " +
+            "from Loan l join l.book b where l.loanDate <= :loanDate and ( l.returned is null or l.returned = false ) " +
+            "and l.customerEmail >= :email and ( l.customerEmail > :email or l.id > :id ) " +
+            "and ( :partitions = 1 or function('ORA_HASH', l.customerEmail, :partitions - 1) = :partition ) " +
+            "order by l.customerEmail, l.id")
+    List<LateLoan> findLateLoansAfter(@Param("loanDate") LocalDate loanDate, @Param("email") String email,
+                                      @Param("id") Long id, @Param("partition") int partition,
+                                      @Param("partitions") int partitions, Pageable limit);
+
+    /**
+     * Returns the loan in a single statement, without reading it first: only an open loan is updated.
+     *
+     * @return 1 when returned, 0 when there is no loan of this id or it was already returned
+     */
+    @Transactional
+    @Modifying
+    @Query("update Loan l set l.returned = true, l.version = l.version + 1 " +
+            "where l.id = :id and ( l.returned is null or l.returned = false )")
+    int markReturned(@Param("id") Long id);
+
+    @Query("select new com.paulina.libraryapi.model.projection.BookLoanCount(l.book.id, count(l)) " +
+            "from Loan l where l.book.id in :bookIds group by l.book.id")
+    List<BookLoanCount> countLoansByBook(@Param("bookIds") Collection<Long> bookIds);
 }
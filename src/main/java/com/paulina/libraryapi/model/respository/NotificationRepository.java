@@ -0,0 +1,65 @@
+package com.paulina.libraryapi.model.respository;
+
+import com.paulina.libraryapi.model.entity.Notification;
+import com.paulina.libraryapi.model.entity.NotificationStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface NotificationRepository extends JpaRepository<Notification, Long> {
+
+    /**
+     * Splits the customers into {@code partitions} by a hash of their email, so all the late loans and the
+     * notification of a customer fall in the same partition. {@code ORA_HASH} is understood by H2 and Oracle;
+     * with a single partition it is not evaluated.
+     */
+    String PARTITION_CONDITION = "( :partitions = 1 or function('ORA_HASH', n.customerEmail, :partitions - 1) = :partition )";
+
+    /**
+     * The last email of the partition enqueued for the day: the late loans are enqueued in email order, so filling
+     * resumes after it.
+     */
+    @Query("select max(n.customerEmail) from Notification n where n.notificationDate = :date and " + PARTITION_CONDITION)
+    String findLastEmail(@Param("date") LocalDate date, @Param("partition") int partition,
+                         @Param("partitions") int partitions);
+
+    /**
+     * Whatever the day they were enqueued: a notification left pending by a failed send or an interrupted run is
+     * picked up by the next run.
+     */
+    @Query("select n from Notification n where n.status = :status and n.id > :id and " + PARTITION_CONDITION +
+            " order by n.id")
+    List<Notification> findNextByStatus(@Param("status") NotificationStatus status, @Param("id") Long id,
+                                        @Param("partition") int partition, @Param("partitions") int partitions,
+                                        Pageable limit);
+
+    @Query("select n.customerEmail from Notification n where n.status = :status and n.customerEmail in :emails")
+    Set<String> findEmailsByStatus(@Param("status") NotificationStatus status, @Param("emails") Collection<String> emails);
+
+    @Transactional
+    @Modifying
+    @Query("update Notification n set n.status = :status, n.sentAt = :sentAt where n.id in :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("status") NotificationStatus sent,
+                 @Param("sentAt") LocalDateTime sentAt);
+
+    /**
+     * Counts a failed attempt, giving the notification up once it reached {@code maxAttempts}.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Notification n set n.attempts = n.attempts + 1, " +
+            "n.status = case when n.attempts + 1 >= :maxAttempts then :status else n.status end where n.id in :ids")
+    int markAttemptFailed(@Param("ids") Collection<Long> ids, @Param("maxAttempts") int maxAttempts,
+                          @Param("status") NotificationStatus failed);
+
+    long countByNotificationDateAndStatus(LocalDate date, NotificationStatus status);
+}
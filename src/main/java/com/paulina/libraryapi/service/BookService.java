@@ -1,21 +1,60 @@
 package com.paulina.libraryapi.service;
 
 import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.projection.BookVersion;
+import com.paulina.libraryapi.model.projection.Suggestion;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface BookService {
     Book save(Book any);
 
     Optional<Book> getById(Long id);
 
+    /**
+     * The book as stored on the primary, never from the cache or the replica: the instance to change before an update
+     * or a delete. A cached book is shared by every request and must not be changed.
+     */
+    Optional<Book> getForUpdate(Long id);
+
+    /**
+     * The version and last modification of a book, without loading it.
+     */
+    Optional<BookVersion> getVersion(Long id);
+
     void delete(Book book);
 
     Book update(Book book);
 
     Page<Book> find(Book filter, Pageable pageRequest);
 
+    /**
+     * Books holding every word of the query in their title, author or isbn, best matches first. Served from the
+     * search index, not the database.
+     */
+    List<Book> search(String query, int size);
+
+    /**
+     * Titles and authors starting with the prefix, most loaned first, from the in-memory suggester.
+     */
+    List<Suggestion> suggest(String prefix, int size);
+
+    Slice<Book> findSlice(Book filter, Pageable pageRequest);
+
     Optional<Book> getBookByIsbn(String isbn);
+
+    List<Book> findAfter(Book filter, Long afterId, int size);
+
+    /**
+     * Saves, in one transaction, the books whose ISBN is not registered yet. The books must have distinct ISBNs. A book
+     * registered meanwhile by another transaction rolls back all of them with a {@code DataIntegrityViolationException}.
+     *
+     * @return the ISBNs that were already registered and therefore skipped
+     */
+    Set<String> importBooks(List<Book> books);
 }
@@ -1,7 +1,15 @@
 package com.paulina.libraryapi.service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface EmailService {
     void sendMails(String message, List<String> mailsList);
+
+    /**
+     * Dispatches like {@link #sendMails}, completing once every message was sent or given up on.
+     *
+     * @return the recipients that could not be reached
+     */
+    CompletableFuture<List<String>> sendMailsAsync(String message, List<String> mailsList);
 }
@@ -3,22 +3,55 @@ package com.paulina.libraryapi.service;
 import com.paulina.libraryapi.api.dto.LoanFilterDTO;
 import com.paulina.libraryapi.model.entity.Book;
 import com.paulina.libraryapi.model.entity.Loan;
+import com.paulina.libraryapi.model.projection.LateLoan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface LoanService {
     Loan save(Loan emprestimo);
 
     Optional<Loan> getById(Long id);
 
+    /**
+     * The loan as stored on the primary, never from the replica: the instance to change before an update.
+     */
+    Optional<Loan> getForUpdate(Long id);
+
     Loan update(Loan loan);
 
+    /**
+     * Marks the loan returned with one conditional update, the loan is not loaded.
+     *
+     * @throws org.springframework.dao.EmptyResultDataAccessException when there is no loan of this id
+     * @throws org.springframework.orm.ObjectOptimisticLockingFailureException when the loan was already returned
+     */
+    void returnLoan(Long id);
+
     Page<Loan> find(LoanFilterDTO filterDTO, Pageable pageble);
 
+    Slice<Loan> findSlice(LoanFilterDTO filterDTO, Pageable pageable);
+
+    List<Loan> findAfter(LoanFilterDTO filterDTO, LocalDate afterLoanDate, Long afterId, int size);
+
     Page<Loan> getLoansByBook(Book book, Pageable pageable);
 
-    List<Loan> getAllLateLoans();
+    /**
+     * Overdue loans ordered by customer email and id, starting after the given one, or from the first when it is null.
+     * Only the customers of {@code partition}, out of {@code partitions}, are returned.
+     */
+    List<LateLoan> getLateLoans(LateLoan after, int size, int partition, int partitions);
+
+    /**
+     * Hands every loan matching the filter, or every loan when no filter is given, to the consumer in id order.
+     * Loans are detached once consumed, so they must not be kept.
+     *
+     * @return the number of exported loans
+     */
+    long exportLoans(LoanFilterDTO filterDTO, Consumer<Loan> consumer);
 }
@@ -0,0 +1,29 @@
+package com.paulina.libraryapi.service;
+
+import java.time.LocalDate;
+
+/**
+ * Late-loan notifications go through the notification outbox: they are first enqueued, one per customer and day,
+ * then sent and marked. A run that stops halfway resumes with what is left instead of starting over.
+ * <p>
+ * The customers are split into {@code partitions} by email, each one enqueued and sent on its own, so several nodes
+ * can work on the same day at once; a single partition holds every customer.
+ */
+public interface NotificationService {
+
+    /**
+     * Enqueues a pending notification for every customer of the partition with late loans, after the last one
+     * already enqueued for the date. A customer still pending from an earlier day is not enqueued again.
+     *
+     * @return the number of enqueued notifications
+     */
+    long enqueueLateLoans(LocalDate date, int partition, int partitions);
+
+    /**
+     * Sends the pending notifications of the partition, whatever their date, marking each one sent or counting the
+     * failed attempt.
+     *
+     * @return the number of sent notifications
+     */
+    long sendPending(String message, int partition, int partitions);
+}
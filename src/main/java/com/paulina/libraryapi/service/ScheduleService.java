@@ -1,13 +1,16 @@
 package com.paulina.libraryapi.service;
 
-import com.paulina.libraryapi.model.entity.Loan;
 import lombok.RequiredArgsConstructor;
+import net.javacrumbs.shedlock.core.ClockProvider;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockingTaskExecutor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 @RequiredArgsConstructor
@@ -15,19 +18,50 @@ public class ScheduleService {
 
     private static final String CRON_LATE_LOANS = "0 0 0 1/1 * ?";
 
+    static final String LATE_LOANS_LOCK = "lateLoans";
+
     @Value("${application.mail.lateloans.message}")
     private String message;
 
-    private final LoanService loanService;
-    private final EmailService emailService;
+    @Value("${application.mail.lateloans.partitions:1}")
+    private int partitions;
+
+    @Value("${application.mail.lateloans.lock-at-most-for:2h}")
+    private Duration lockAtMostFor;
+
+    @Value("${application.mail.lateloans.lock-at-least-for:5m}")
+    private Duration lockAtLeastFor;
+
+    private final NotificationService notificationService;
 
+    private final LockingTaskExecutor lockingTaskExecutor;
+
+    /**
+     * Runs on every node, but each partition of the customers is worked on by the node holding its lease only;
+     * the others skip it without waiting. Nodes start from a random partition so they spread over the partitions
+     * instead of racing for the same one. The lease is kept for at least {@code lock-at-least-for}, so a node that
+     * fires a little late does not run a partition again.
+     * <p>
+     * Safe to run again the same day: it enqueues only the customers not enqueued yet and sends only what is pending,
+     * including what an earlier day left pending.
+     */
     @Scheduled(cron = CRON_LATE_LOANS)
     public void sendMailToLateLoans(){
-        List<Loan> allLateLoans = loanService.getAllLateLoans();
-
-        List<String> mailsList = allLateLoans.stream().map(loan -> loan.getCustomerEmail()).collect(Collectors.toList());
+        LocalDate today = LocalDate.now();
+        int first = ThreadLocalRandom.current().nextInt(partitions);
+        for( int i = 0; i < partitions; i++ ){
+            int partition = (first + i) % partitions;
+            Runnable job = () -> {
+                notificationService.enqueueLateLoans(today, partition, partitions);
+                notificationService.sendPending(message, partition, partitions);
+            };
+            lockingTaskExecutor.executeWithLock(job, lockConfiguration(partition));
+        }
+    }
 
-        emailService.sendMails(message, mailsList);
+    private LockConfiguration lockConfiguration(int partition) {
+        String name = partitions == 1 ? LATE_LOANS_LOCK : LATE_LOANS_LOCK + "-" + partition + "-of-" + partitions;
+        return new LockConfiguration(ClockProvider.now(), name, lockAtMostFor, lockAtLeastFor);
     }
 
 }
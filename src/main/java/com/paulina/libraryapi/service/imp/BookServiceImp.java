@@ -2,25 +2,51 @@ package com.paulina.libraryapi.service.imp;
 
 import com.paulina.libraryapi.api.exception.BusinessException;
 import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.projection.BookVersion;
+import com.paulina.libraryapi.model.projection.Suggestion;
 import com.paulina.libraryapi.model.respository.BookRepository;
 import com.paulina.libraryapi.service.BookService;
+import com.paulina.libraryapi.service.search.BookSearchIndex;
+import com.paulina.libraryapi.service.search.BookSuggester;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class BookServiceImp implements BookService {
 
+    public static final String BOOKS_CACHE = "books";
+    public static final String BOOKS_BY_ISBN_CACHE = "booksByIsbn";
+    public static final String BOOK_VERSIONS_CACHE = "bookVersions";
 
     private BookRepository repository;
 
+    private EntityManager entityManager;
 
-    public BookServiceImp(BookRepository repository) {
+    private BookSearchIndex searchIndex;
+
+    private BookSuggester suggester;
+
+    public BookServiceImp(BookRepository repository, EntityManager entityManager, BookSearchIndex searchIndex,
+                          BookSuggester suggester) {
         this.repository = repository;
+        this.entityManager = entityManager;
+        this.searchIndex = searchIndex;
+        this.suggester = suggester;
     }
 
     @Override
@@ -28,31 +54,77 @@ public class BookServiceImp implements BookService {
         if(repository.existsByIsbn(book.getIsbn()) ){
             throw new BusinessException("ISBN já cadastrado");
         }
-        return repository.save(book);
+        Book saved = repository.save(book);
+        searchIndex.index(saved);
+        suggester.index(saved);
+        return saved;
     }
 
+    /**
+     * Read from the primary, not the replica: a lagging replica row would be cached and served for the whole TTL. The
+     * read-write transaction takes the read-only one of the repository in, so it is not routed to the replica.
+     */
     @Override
+    @Transactional
+    @Cacheable(cacheNames = BOOKS_CACHE, key = "#id", condition = "#id != null", unless = "#result == null")
     public Optional<Book> getById(Long id) {
         return repository.findById(id);
     }
 
     @Override
+    @Transactional
+    public Optional<Book> getForUpdate(Long id) {
+        return repository.findById(id);
+    }
+
+    /**
+     * Cached apart from the books: a revalidation neither loads nor caches the book. Read from the primary like
+     * {@link #getById}.
+     */
+    @Override
+    @Transactional
+    @Cacheable(cacheNames = BOOK_VERSIONS_CACHE, key = "#id", condition = "#id != null", unless = "#result == null")
+    public Optional<BookVersion> getVersion(Long id) {
+        return repository.findVersionById(id);
+    }
+
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = BOOKS_CACHE, key = "#book.id", beforeInvocation = true, condition = "#book.id != null"),
+            @CacheEvict(cacheNames = BOOKS_BY_ISBN_CACHE, key = "#book.isbn", beforeInvocation = true, condition = "#book.isbn != null"),
+            @CacheEvict(cacheNames = BOOK_VERSIONS_CACHE, key = "#book.id", condition = "#book.id != null")
+    })
     public void delete(Book book) {
         if(book.getId() == null){
             throw new IllegalArgumentException("Book id cant be null.");
         }
         this.repository.delete(book);
+        searchIndex.remove(book.getId());
+        suggester.remove(book.getId());
     }
 
+    /**
+     * Evicts after the commit, a lookup in between must not cache the previous book or version. A failed update
+     * changed nothing, its entries stay: the book to update comes from {@link #getForUpdate}, not from the cache.
+     */
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = BOOKS_CACHE, key = "#book.id", condition = "#book.id != null"),
+            @CacheEvict(cacheNames = BOOKS_BY_ISBN_CACHE, key = "#book.isbn", condition = "#book.isbn != null"),
+            @CacheEvict(cacheNames = BOOK_VERSIONS_CACHE, key = "#book.id", condition = "#book.id != null")
+    })
     public Book update(Book book) {
         if(book.getId() == null){
             throw new IllegalArgumentException("Book id cant be null.");
         }
-        return this.repository.save(book);
+        Book updated = this.repository.save(book);
+        searchIndex.index(updated);
+        suggester.index(updated);
+        return updated;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Book> find(Book filter, Pageable pageRequest) {
         Example<Book> example = Example.of(filter, ExampleMatcher.matching().withIgnoreCase()
                                                         .withIgnoreNullValues()
@@ -61,9 +133,53 @@ public class BookServiceImp implements BookService {
     }
 
     @Override
+    public List<Book> search(String query, int size) {
+        return searchIndex.search(query, size);
+    }
+
+    @Override
+    public List<Suggestion> suggest(String prefix, int size) {
+        return suggester.suggest(prefix, size);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Book> findSlice(Book filter, Pageable pageRequest) {
+        return repository.findSliceByFilter(filter.getTitle(), filter.getAuthor(), filter.getIsbn(), pageRequest);
+    }
+
+    /**
+     * Read from the primary like {@link #getById}.
+     */
+    @Override
+    @Transactional
+    @Cacheable(cacheNames = BOOKS_BY_ISBN_CACHE, key = "#isbn", condition = "#isbn != null", unless = "#result == null")
     public Optional<Book> getBookByIsbn(String isbn) {
         return repository.findByIsbn(isbn);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Book> findAfter(Book filter, Long afterId, int size) {
+        Long id = afterId == null ? 0L : afterId;
+        return repository.findNextByFilter(filter.getTitle(), filter.getAuthor(), filter.getIsbn(), id, PageRequest.of(0, size));
+    }
+
+    /**
+     * Only inserts, so no cached entry goes stale: lookups that found nothing are never cached.
+     * Clears the persistence context after the flush: with open-in-view it lives for the whole request, not one chunk.
+     */
+    @Override
+    @Transactional
+    public Set<String> importBooks(List<Book> books) {
+        Set<String> registered = repository.findIsbnsIn(books.stream().map(Book::getIsbn).collect(Collectors.toList()));
+        List<Book> saved = repository.saveAll(books.stream().filter(book -> !registered.contains(book.getIsbn())).collect(Collectors.toList()));
+        repository.flush();
+        searchIndex.index(saved);
+        suggester.index(saved);
+        entityManager.clear();
+        return registered;
+    }
+
 
 }
@@ -1,36 +1,209 @@
 package com.paulina.libraryapi.service.imp;
 
+import com.paulina.libraryapi.config.MailDispatchProperties;
 import com.paulina.libraryapi.service.EmailService;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Splits the recipients into messages of {@code recipients-per-message}, addressed in Bcc so no customer sees the
+ * others, groups the messages into batches of {@code messages-per-connection} and sends each batch over one SMTP
+ * connection on a pool of {@code connections} threads. Batches wait in a bounded queue; when it is full the calling
+ * thread sends the batch itself, which slows the producer down instead of growing the queue. Messages that fail with
+ * a send error are retried with an exponential backoff; authentication and parse errors are not.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class EmailServiceImp  implements EmailService {
 
-    @Value("${application.mail.default-remetent}")
-    private String remetent;
+    static final String SUBJECT = "Livro com emprestimo atrasada";
+
+    private final String remetent;
 
     private final JavaMailSender javaMailSender;
 
+    private final MailDispatchProperties properties;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Counter sentMessages;
+    private final Counter failedMessages;
+    private final Counter retriedMessages;
+    private final Counter sentRecipients;
+    private final Timer connectionTimer;
 
+    public EmailServiceImp(@Value("${application.mail.default-remetent}") String remetent, JavaMailSender javaMailSender,
+                           MailDispatchProperties properties, MeterRegistry meterRegistry) {
+        this.remetent = remetent;
+        this.javaMailSender = javaMailSender;
+        this.properties = properties;
+        this.executor = new ThreadPoolExecutor(properties.getConnections(), properties.getConnections(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                new CustomizableThreadFactory("mail-"), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.sentMessages = meterRegistry.counter("library.mail.messages", "result", "sent");
+        this.failedMessages = meterRegistry.counter("library.mail.messages", "result", "failed");
+        this.retriedMessages = meterRegistry.counter("library.mail.retries");
+        this.sentRecipients = meterRegistry.counter("library.mail.recipients");
+        this.connectionTimer = meterRegistry.timer("library.mail.connection");
+        Gauge.builder("library.mail.queue", executor, pool -> pool.getQueue().size())
+                .description("Connection batches waiting to be sent")
+                .register(meterRegistry);
+    }
 
     @Override
     public void sendMails(String message, List<String> mailsList) {
-        String[] mails =mailsList.toArray(new String[mailsList.size()]);
+        sendMailsAsync(message, mailsList);
+    }
 
+    @Override
+    public CompletableFuture<List<String>> sendMailsAsync(String message, List<String> mailsList) {
+        int recipientsPerMessage = properties.getRecipientsPerMessage();
+        List<CompletableFuture<List<SimpleMailMessage>>> batches = new ArrayList<>();
+        List<SimpleMailMessage> batch = new ArrayList<>(properties.getMessagesPerConnection());
+        for( int from = 0; from < mailsList.size(); from += recipientsPerMessage ){
+            List<String> mails = mailsList.subList(from, Math.min(from + recipientsPerMessage, mailsList.size()));
+            batch.add(createMessage(message, mails));
+            if( batch.size() == properties.getMessagesPerConnection() ){
+                batches.add(dispatch(batch));
+                batch = new ArrayList<>(properties.getMessagesPerConnection());
+            }
+        }
+        if( !batch.isEmpty() ){
+            batches.add(dispatch(batch));
+        }
+
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).thenApply(done -> {
+            List<String> unreached = new ArrayList<>();
+            for( CompletableFuture<List<SimpleMailMessage>> sent : batches ){
+                sent.join().forEach(failed -> unreached.addAll(Arrays.asList(failed.getBcc())));
+            }
+            return unreached;
+        });
+    }
+
+    private SimpleMailMessage createMessage(String message, List<String> mails) {
         SimpleMailMessage mailMessage = new SimpleMailMessage();
         mailMessage.setFrom(remetent);
-        mailMessage.setSubject("Livro com emprestimo atrasada");
+        mailMessage.setSubject(SUBJECT);
         mailMessage.setText(message);
-        mailMessage.setTo(mails);
+        mailMessage.setBcc(mails.toArray(new String[0]));
+        return mailMessage;
+    }
 
-        javaMailSender.send(mailMessage);
+    private CompletableFuture<List<SimpleMailMessage>> dispatch(List<SimpleMailMessage> batch) {
+        if( executor.isShutdown() ){
+            // the caller-runs policy would silently drop the batch and leave the future pending
+            fail(batch, 0, null);
+            return CompletableFuture.completedFuture(batch);
+        }
+        return CompletableFuture.supplyAsync(() -> send(batch), executor);
+    }
+
+    /**
+     * Sends the batch over one connection, then retries only the messages the server did not accept.
+     *
+     * @return the messages given up on
+     */
+    List<SimpleMailMessage> send(List<SimpleMailMessage> batch) {
+        List<SimpleMailMessage> pending = batch;
+        for( int attempt = 1; ; attempt++ ){
+            MailSendException error = null;
+            Timer.Sample sample = Timer.start();
+            try {
+                javaMailSender.send(pending.toArray(new SimpleMailMessage[0]));
+            } catch (MailSendException ex) {
+                error = ex;
+            } catch (MailException ex) {
+                // authentication or message errors, a retry would fail the same way
+                sample.stop(connectionTimer);
+                fail(pending, attempt, ex);
+                return pending;
+            }
+            sample.stop(connectionTimer);
+
+            List<SimpleMailMessage> failed = error == null ? Collections.emptyList() : failedMessages(error, pending);
+            countSent(pending, failed);
+            if( failed.isEmpty() ){
+                return failed;
+            }
+            if( attempt >= properties.getMaxAttempts() || !backoff(attempt) ){
+                fail(failed, attempt, error);
+                return failed;
+            }
+            log.warn(" retrying {} late loan mails: {} ", failed.size(), error.getMessage());
+            retriedMessages.increment(failed.size());
+            pending = failed;
+        }
+    }
+
+    /**
+     * The messages rejected by the server, or all of them when the connection itself failed.
+     */
+    private List<SimpleMailMessage> failedMessages(MailSendException ex, List<SimpleMailMessage> pending) {
+        List<SimpleMailMessage> failed = new ArrayList<>();
+        for( Object message : ex.getFailedMessages().keySet() ){
+            if( message instanceof SimpleMailMessage ){
+                failed.add((SimpleMailMessage) message);
+            }
+        }
+        return failed.isEmpty() ? pending : failed;
+    }
+
+    private void countSent(List<SimpleMailMessage> pending, List<SimpleMailMessage> failed) {
+        Set<SimpleMailMessage> notSent = Collections.newSetFromMap(new IdentityHashMap<>());
+        notSent.addAll(failed);
+        for( SimpleMailMessage message : pending ){
+            if( !notSent.contains(message) ){
+                sentMessages.increment();
+                sentRecipients.increment(message.getBcc().length);
+            }
+        }
+    }
+
+    private void fail(List<SimpleMailMessage> failed, int attempts, MailException error) {
+        failedMessages.increment(failed.size());
+        log.error(" failed to send {} late loan mails after {} attempts ", failed.size(), attempts, error);
+    }
+
+    private boolean backoff(int attempt) {
+        try {
+            Thread.sleep(properties.getBackoff().toMillis() << (attempt - 1));
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if( !executor.awaitTermination(properties.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS) ){
+            log.warn(" {} late loan mail batches were not sent before shutdown ", executor.getQueue().size());
+            executor.shutdownNow();
+        }
     }
 }
@@ -4,59 +4,186 @@ import com.paulina.libraryapi.api.dto.LoanFilterDTO;
 import com.paulina.libraryapi.api.exception.BusinessException;
 import com.paulina.libraryapi.model.entity.Book;
 import com.paulina.libraryapi.model.entity.Loan;
+import com.paulina.libraryapi.model.projection.LateLoan;
 import com.paulina.libraryapi.model.respository.LoanRepository;
 import com.paulina.libraryapi.service.LoanService;
+import com.paulina.libraryapi.service.search.BookSuggester;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
 import java.time.LocalDate;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class LoanServiceImp implements LoanService {
 
+    /**
+     * Unique index on the book of open loans, see V2__one_open_loan_per_book.sql
+     */
+    private static final String OPEN_LOAN_INDEX = "UX_LOAN_OPEN_BOOK";
+
     private LoanRepository repository;
 
-    public LoanServiceImp(LoanRepository repository) {
+    private EntityManager entityManager;
+
+    private BookSuggester suggester;
+
+    private final Counter createdLoans;
+    private final Counter returnedLoans;
+    private final Counter rejectedLoans;
+
+    public LoanServiceImp(LoanRepository repository, EntityManager entityManager, BookSuggester suggester,
+                          MeterRegistry meterRegistry) {
         this.repository = repository;
+        this.entityManager = entityManager;
+        this.suggester = suggester;
+        this.createdLoans = meterRegistry.counter("library.loans.created");
+        this.returnedLoans = meterRegistry.counter("library.loans.returned");
+        this.rejectedLoans = meterRegistry.counter("library.loans.rejected", "reason", "already-loaned");
     }
 
+    /**
+     * The active loan check is done by the database in the same round trip as the insert,
+     * so concurrent loans of the same book cannot both pass it.
+     */
     @Override
     public Loan save( Loan loan ) {
-        if( repository.existsByBookAndNotReturned(loan.getBook()) ){
-            throw new BusinessException("Book already loaned");
+        try {
+            Loan saved = repository.saveAndFlush(loan);
+            suggester.loaned(saved.getBook().getId());
+            createdLoans.increment();
+            return saved;
+        } catch (DataIntegrityViolationException ex) {
+            if( isOpenLoanViolation(ex) ){
+                rejectedLoans.increment();
+                throw new BusinessException("Book already loaned");
+            }
+            throw ex;
+        }
+    }
+
+    private boolean isOpenLoanViolation(DataIntegrityViolationException ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if( cause.getMessage() != null && cause.getMessage().toUpperCase().contains(OPEN_LOAN_INDEX) ){
+                return true;
+            }
         }
-        return repository.save(loan);
+        return false;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<Loan> getById(Long id) {
         return repository.findById(id);
     }
 
+    @Override
+    @Transactional
+    public Optional<Loan> getForUpdate(Long id) {
+        return repository.findById(id);
+    }
+
+    /**
+     * Reopening a loan goes through the same unique index as a new loan, so it is flushed here
+     * to reject it while the book is loaned out again.
+     */
     @Override
     public Loan update(Loan loan) {
-        return repository.save(loan);
+        try {
+            return repository.saveAndFlush(loan);
+        } catch (DataIntegrityViolationException ex) {
+            if( isOpenLoanViolation(ex) ){
+                rejectedLoans.increment();
+                throw new BusinessException("Book already loaned");
+            }
+            throw ex;
+        }
     }
 
+    /**
+     * The loan is only read to tell a missing loan from a returned one, when nothing was updated.
+     */
     @Override
+    public void returnLoan(Long id) {
+        if( repository.markReturned(id) == 1 ){
+            returnedLoans.increment();
+            return;
+        }
+        if( !repository.existsById(id) ){
+            throw new EmptyResultDataAccessException("No loan of id " + id, 1);
+        }
+        throw new ObjectOptimisticLockingFailureException(Loan.class, id);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Page<Loan> find(LoanFilterDTO filterDTO, Pageable pageable) {
         return repository.findByBookISBNOrCustomer( filterDTO.getIsbn(), filterDTO.getCustomer(), pageable );
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Slice<Loan> findSlice(LoanFilterDTO filterDTO, Pageable pageable) {
+        return repository.findSliceByBookISBNOrCustomer( filterDTO.getIsbn(), filterDTO.getCustomer(), pageable );
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Loan> findAfter(LoanFilterDTO filterDTO, LocalDate afterLoanDate, Long afterId, int size) {
+        if( afterLoanDate == null ){
+            return repository.findFirstByBookISBNOrCustomer( filterDTO.getIsbn(), filterDTO.getCustomer(), PageRequest.of(0, size) );
+        }
+        return repository.findNextByBookISBNOrCustomer( filterDTO.getIsbn(), filterDTO.getCustomer(), afterLoanDate, afterId, PageRequest.of(0, size) );
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Page<Loan> getLoansByBook(Book book, Pageable pageable) {
         return repository.findByBook(book, pageable);
     }
 
     @Override
-    public List<Loan> getAllLateLoans() {
+    @Transactional(readOnly = true)
+    public List<LateLoan> getLateLoans(LateLoan after, int size, int partition, int partitions) {
         final Integer loanDays = 4;
         LocalDate threeDaysAgo = LocalDate.now().minusDays(loanDays);
-        return repository.findByLoanDateLessThanAndNotReturned(threeDaysAgo);
+        if( after == null ){
+            return repository.findLateLoansAfter(threeDaysAgo, "", 0L, partition, partitions, PageRequest.of(0, size));
+        }
+        return repository.findLateLoansAfter(threeDaysAgo, after.getCustomerEmail(), after.getId(), partition, partitions,
+                PageRequest.of(0, size));
+    }
+
+    /**
+     * Clears the persistence context after every fetched batch, so memory does not grow with the number of loans.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public long exportLoans(LoanFilterDTO filterDTO, Consumer<Loan> consumer) {
+        long count = 0;
+        try (Stream<Loan> loans = repository.streamByBookISBNOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer())) {
+            Iterator<Loan> iterator = loans.iterator();
+            while( iterator.hasNext() ){
+                consumer.accept(iterator.next());
+                if( ++count % LoanRepository.EXPORT_FETCH_SIZE == 0 ){
+                    entityManager.clear();
+                }
+            }
+        }
+        return count;
     }
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+package com.paulina.libraryapi.service.imp;
+
+import com.paulina.libraryapi.model.entity.Notification;
+import com.paulina.libraryapi.model.entity.NotificationStatus;
+import com.paulina.libraryapi.model.projection.LateLoan;
+import com.paulina.libraryapi.model.respository.NotificationRepository;
+import com.paulina.libraryapi.service.EmailService;
+import com.paulina.libraryapi.service.LoanService;
+import com.paulina.libraryapi.service.NotificationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class NotificationServiceImp implements NotificationService {
+
+    private NotificationRepository repository;
+
+    private LoanService loanService;
+
+    private EmailService emailService;
+
+    private int scanChunkSize;
+
+    private int sendChunkSize;
+
+    private int maxAttempts;
+
+    public NotificationServiceImp(NotificationRepository repository, LoanService loanService, EmailService emailService,
+                                  @Value("${application.mail.lateloans.chunk-size:1000}") int scanChunkSize,
+                                  @Value("${application.mail.outbox.chunk-size:4000}") int sendChunkSize,
+                                  @Value("${application.mail.outbox.max-attempts:3}") int maxAttempts) {
+        this.repository = repository;
+        this.loanService = loanService;
+        this.emailService = emailService;
+        this.scanChunkSize = scanChunkSize;
+        this.sendChunkSize = sendChunkSize;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * The late loans come ordered by email, so a customer with several of them is enqueued once, and each chunk is
+     * saved in its own transaction. A customer whose notification of an earlier day is still pending gets that one,
+     * not a second mail in the same run.
+     */
+    @Override
+    public long enqueueLateLoans(LocalDate date, int partition, int partitions) {
+        long start = System.currentTimeMillis();
+        long scanned = 0;
+        long enqueued = 0;
+        String lastEmail = repository.findLastEmail(date, partition, partitions);
+        LateLoan after = lastEmail == null ? null : new LateLoan(Long.MAX_VALUE, null, lastEmail, null);
+
+        List<LateLoan> chunk = loanService.getLateLoans(after, scanChunkSize, partition, partitions);
+        while( !chunk.isEmpty() ){
+            scanned += chunk.size();
+            Set<String> pending = repository.findEmailsByStatus(NotificationStatus.PENDING,
+                    chunk.stream().map(LateLoan::getCustomerEmail).distinct().collect(Collectors.toList()));
+            List<Notification> notifications = new ArrayList<>();
+            for( LateLoan loan : chunk ){
+                if( !loan.getCustomerEmail().isEmpty() && !loan.getCustomerEmail().equals(lastEmail)
+                        && !pending.contains(loan.getCustomerEmail()) ){
+                    notifications.add(Notification.builder()
+                            .customerEmail(loan.getCustomerEmail())
+                            .notificationDate(date)
+                            .status(NotificationStatus.PENDING)
+                            .build());
+                }
+                lastEmail = loan.getCustomerEmail();
+            }
+            repository.saveAll(notifications);
+            enqueued += notifications.size();
+            if( chunk.size() < scanChunkSize ){
+                break;
+            }
+            chunk = loanService.getLateLoans(chunk.get(chunk.size() - 1), scanChunkSize, partition, partitions);
+        }
+
+        log.info(" late loans {}/{}: scanned {} rows, enqueued {} notifications in {} ms ", partition, partitions,
+                scanned, enqueued, System.currentTimeMillis() - start);
+        return enqueued;
+    }
+
+    /**
+     * A notification is marked only after its mail was handed to the server, so a crash in between sends it again
+     * on the next run rather than losing it. Failed ones stay pending, and are sent again by the next runs, until they
+     * reach the maximum attempts.
+     */
+    @Override
+    public long sendPending(String message, int partition, int partitions) {
+        long start = System.currentTimeMillis();
+        long sent = 0;
+        long failed = 0;
+
+        List<Notification> chunk = repository.findNextByStatus(NotificationStatus.PENDING, 0L, partition, partitions,
+                PageRequest.of(0, sendChunkSize));
+        while( !chunk.isEmpty() ){
+            Map<String, Long> ids = new LinkedHashMap<>();
+            chunk.forEach(notification -> ids.put(notification.getCustomerEmail(), notification.getId()));
+
+            List<Long> failedIds = new ArrayList<>();
+            for( String email : emailService.sendMailsAsync(message, new ArrayList<>(ids.keySet())).join() ){
+                failedIds.add(ids.remove(email));
+            }
+            if( !ids.isEmpty() ){
+                repository.markSent(ids.values(), NotificationStatus.SENT, LocalDateTime.now());
+            }
+            if( !failedIds.isEmpty() ){
+                repository.markAttemptFailed(failedIds, maxAttempts, NotificationStatus.FAILED);
+            }
+            sent += ids.size();
+            failed += failedIds.size();
+
+            if( chunk.size() < sendChunkSize ){
+                break;
+            }
+            Long afterId = chunk.get(chunk.size() - 1).getId();
+            chunk = repository.findNextByStatus(NotificationStatus.PENDING, afterId, partition, partitions,
+                    PageRequest.of(0, sendChunkSize));
+        }
+
+        log.info(" late loans {}/{}: sent {} notifications, {} failed in {} ms ", partition, partitions, sent, failed,
+                System.currentTimeMillis() - start);
+        return sent;
+    }
+}
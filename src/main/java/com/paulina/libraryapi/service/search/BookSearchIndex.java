@@ -0,0 +1,248 @@
+package com.paulina.libraryapi.service.search;
+
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.respository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over the title, author and isbn of the books, so catalog searches do not scan the
+ * {@code book} table. Words are lower cased and stripped of accents; a book matches when it holds every word of the
+ * query, the last one also as a prefix, and matches are ranked by how rare the words are and in which field they
+ * were found.
+ * <p>
+ * Writes through {@code BookService} are applied once their transaction commits. The index is rebuilt from the
+ * database at startup and every {@code application.books.search.rebuild-interval}, which also picks up the books
+ * written by other nodes.
+ */
+@Slf4j
+@Component
+public class BookSearchIndex extends SwappableIndex<BookSearchIndex.Index> {
+
+    static final float TITLE_WEIGHT = 2f;
+    static final float AUTHOR_WEIGHT = 1f;
+    static final float ISBN_WEIGHT = 4f;
+    static final float PREFIX_WEIGHT = 0.5f;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private final BookRepository repository;
+    private final int rebuildChunkSize;
+
+    public BookSearchIndex(BookRepository repository,
+                           @Value("${application.books.search.rebuild-chunk-size:1000}") int rebuildChunkSize) {
+        super(new Index());
+        this.repository = repository;
+        this.rebuildChunkSize = rebuildChunkSize;
+    }
+
+    /**
+     * The best matching books, best first, or none for a query without words.
+     */
+    public List<Book> search(String query, int size) {
+        List<String> words = words(query);
+        if( words.isEmpty() ){
+            return Collections.emptyList();
+        }
+        return read(index -> index.search(words, size));
+    }
+
+    public void index(Book book) {
+        index(Collections.singletonList(book));
+    }
+
+    public void index(Collection<Book> books) {
+        List<Document> documents = new ArrayList<>(books.size());
+        books.forEach(book -> documents.add(new Document(book)));
+        write(index -> documents.forEach(index::add));
+    }
+
+    public void remove(Long id) {
+        write(index -> index.remove(id));
+    }
+
+    public int size() {
+        return read(index -> index.documents.size());
+    }
+
+    /**
+     * Builds a new index from the database while the current one keeps serving searches, then swaps them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${application.books.search.rebuild-interval:PT10M}",
+            fixedDelayString = "${application.books.search.rebuild-interval:PT10M}")
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Index rebuilt = rebuild(() -> {
+            Index index = new Index();
+            List<Book> chunk = repository.findNextByFilter(null, null, null, 0L, PageRequest.of(0, rebuildChunkSize));
+            while( !chunk.isEmpty() ){
+                chunk.forEach(book -> index.add(new Document(book)));
+                if( chunk.size() < rebuildChunkSize ){
+                    break;
+                }
+                Long afterId = chunk.get(chunk.size() - 1).getId();
+                chunk = repository.findNextByFilter(null, null, null, afterId, PageRequest.of(0, rebuildChunkSize));
+            }
+            return index;
+        });
+        log.info(" indexed {} books, {} words in {} ms ", rebuilt.documents.size(), rebuilt.postings.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Lower cased words without accents, so {@code "Memórias Póstumas"} is found by {@code "memorias postumas"}.
+     */
+    static List<String> words(String text) {
+        if( text == null ){
+            return Collections.emptyList();
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        for( String word : SEPARATORS.split(folded) ){
+            if( !word.isEmpty() ){
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * The indexed copy of a book: the index keeps no reference to entities that may change outside it.
+     */
+    private static class Document {
+
+        private final Long id;
+        private final String title;
+        private final String author;
+        private final String isbn;
+        private final Map<String, Float> weights = new HashMap<>();
+
+        Document(Book book) {
+            this.id = book.getId();
+            this.title = book.getTitle();
+            this.author = book.getAuthor();
+            this.isbn = book.getIsbn();
+            words(title).forEach(word -> weights.merge(word, TITLE_WEIGHT, Float::sum));
+            words(author).forEach(word -> weights.merge(word, AUTHOR_WEIGHT, Float::sum));
+            List<String> isbnParts = words(isbn);
+            isbnParts.forEach(word -> weights.merge(word, ISBN_WEIGHT, Float::sum));
+            if( isbnParts.size() > 1 ){
+                // "978-85-359" is also found as "97885359"
+                weights.merge(String.join("", isbnParts), ISBN_WEIGHT, Float::sum);
+            }
+        }
+
+        Book toBook() {
+            return Book.builder().id(id).title(title).author(author).isbn(isbn).build();
+        }
+    }
+
+    static class Index {
+
+        private final Map<Long, Document> documents = new HashMap<>();
+        private final TreeMap<String, Map<Long, Float>> postings = new TreeMap<>();
+
+        void add(Document document) {
+            remove(document.id);
+            documents.put(document.id, document);
+            document.weights.forEach((word, weight) -> postings.computeIfAbsent(word, key -> new HashMap<>()).put(document.id, weight));
+        }
+
+        void remove(Long id) {
+            Document document = documents.remove(id);
+            if( document == null ){
+                return;
+            }
+            for( String word : document.weights.keySet() ){
+                Map<Long, Float> posting = postings.get(word);
+                posting.remove(id);
+                if( posting.isEmpty() ){
+                    postings.remove(word);
+                }
+            }
+        }
+
+        List<Book> search(List<String> words, int size) {
+            List<Map<Long, Float>> matches = new ArrayList<>(words.size());
+            for( int i = 0; i < words.size(); i++ ){
+                Map<Long, Float> match = i == words.size() - 1 ? prefixMatches(words.get(i)) : exactMatches(words.get(i));
+                if( match.isEmpty() ){
+                    return Collections.emptyList();
+                }
+                matches.add(match);
+            }
+            // intersect from the rarest word, so a word found in every book costs one lookup per candidate
+            matches.sort(Comparator.comparingInt(Map::size));
+
+            Map<Long, Float> scores = new HashMap<>();
+            candidates:
+            for( Long id : matches.get(0).keySet() ){
+                float score = 0;
+                for( Map<Long, Float> match : matches ){
+                    Float weight = match.get(id);
+                    if( weight == null ){
+                        continue candidates;
+                    }
+                    // rare words tell more about a book than common ones
+                    score += weight * (float) Math.log(1 + (double) documents.size() / match.size());
+                }
+                scores.put(id, score);
+            }
+            return top(scores, size);
+        }
+
+        private Map<Long, Float> exactMatches(String word) {
+            Map<Long, Float> posting = postings.get(word);
+            return posting == null ? Collections.emptyMap() : posting;
+        }
+
+        private Map<Long, Float> prefixMatches(String prefix) {
+            Map<Long, Float> matches = new HashMap<>(exactMatches(prefix));
+            for( Map.Entry<String, Map<Long, Float>> posting : postings.subMap(prefix, false, prefix + Character.MAX_VALUE, false).entrySet() ){
+                posting.getValue().forEach((id, weight) -> matches.merge(id, weight * PREFIX_WEIGHT, Math::max));
+            }
+            return matches;
+        }
+
+        /**
+         * Keeps the best {@code size} books in a heap instead of sorting every match.
+         */
+        private List<Book> top(Map<Long, Float> scores, int size) {
+            Comparator<Map.Entry<Long, Float>> ranking = Map.Entry.<Long, Float>comparingByValue()
+                    .thenComparing(Map.Entry.<Long, Float>comparingByKey().reversed());
+            PriorityQueue<Map.Entry<Long, Float>> best = new PriorityQueue<>(ranking);
+            for( Map.Entry<Long, Float> score : scores.entrySet() ){
+                best.add(score);
+                if( best.size() > size ){
+                    best.poll();
+                }
+            }
+            List<Book> books = new ArrayList<>(best.size());
+            while( !best.isEmpty() ){
+                books.add(documents.get(best.poll().getKey()).toBook());
+            }
+            Collections.reverse(books);
+            return books;
+        }
+    }
+}
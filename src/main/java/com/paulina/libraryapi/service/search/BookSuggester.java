@@ -0,0 +1,495 @@
+package com.paulina.libraryapi.service.search;
+
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.projection.BookLoanCount;
+import com.paulina.libraryapi.model.projection.Suggestion;
+import com.paulina.libraryapi.model.respository.BookRepository;
+import com.paulina.libraryapi.model.respository.LoanRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Completes a typed prefix with the titles and authors of the catalog, most loaned first. The titles and authors,
+ * lower cased and without accents, are kept in a trie whose every node holds its {@code max-size} most loaned
+ * completions, so a suggestion costs one walk down the prefix and no sorting.
+ * <p>
+ * Kept in sync like {@link BookSearchIndex}: book writes are applied as they commit, and the trie is rebuilt with the
+ * loan counts from the database every {@code application.books.search.rebuild-interval}. New loans are only counted
+ * as they commit and applied together every {@code application.books.suggest.loan-flush-interval}, so creating a loan
+ * never waits for the lock suggestions read under. Its size is kept up to date by the trie and published as the
+ * {@code library.books.suggest.*} gauges.
+ */
+@Slf4j
+@Component
+public class BookSuggester extends SwappableIndex<BookSuggester.Trie> {
+
+    private final BookRepository bookRepository;
+    private final LoanRepository loanRepository;
+    private final int rebuildChunkSize;
+    private final int maxSize;
+
+    /**
+     * Loans committed since the last flush, by book id.
+     */
+    private final Map<Long, Long> newLoans = new ConcurrentHashMap<>();
+
+    public BookSuggester(BookRepository bookRepository, LoanRepository loanRepository, MeterRegistry meterRegistry,
+                         @Value("${application.books.search.rebuild-chunk-size:1000}") int rebuildChunkSize,
+                         @Value("${application.books.suggest.max-size:10}") int maxSize) {
+        super(new Trie(maxSize));
+        this.bookRepository = bookRepository;
+        this.loanRepository = loanRepository;
+        this.rebuildChunkSize = rebuildChunkSize;
+        this.maxSize = maxSize;
+
+        Gauge.builder("library.books.suggest.nodes", this, suggester -> suggester.read(trie -> trie.nodes))
+                .description("Nodes of the suggestion trie")
+                .register(meterRegistry);
+        Gauge.builder("library.books.suggest.suggestions", this, suggester -> suggester.read(trie -> trie.suggestions.size()))
+                .description("Distinct titles and authors that can be suggested")
+                .register(meterRegistry);
+        Gauge.builder("library.books.suggest.memory", this, BookSuggester::footprint)
+                .description("Estimated heap held by the suggestion trie")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The most loaned titles and authors starting with the prefix, at most {@code max-size} of them.
+     */
+    public List<Suggestion> suggest(String prefix, int size) {
+        String key = key(prefix);
+        if( key.isEmpty() ){
+            return Collections.emptyList();
+        }
+        // "dom " completes the word "dom" only, not "domingo"
+        String typed = Character.isWhitespace(prefix.charAt(prefix.length() - 1)) ? key + ' ' : key;
+        return read(trie -> trie.suggest(typed, Math.min(size, maxSize)));
+    }
+
+    /**
+     * Adds the book or updates its title and author, keeping its loan count.
+     */
+    public void index(Book book) {
+        index(Collections.singletonList(book));
+    }
+
+    public void index(Collection<Book> books) {
+        List<Book> copies = books.stream()
+                .map(book -> Book.builder().id(book.getId()).title(book.getTitle()).author(book.getAuthor()).build())
+                .collect(Collectors.toList());
+        write(trie -> copies.forEach(book -> trie.put(book.getId(), book.getTitle(), book.getAuthor(), null)));
+    }
+
+    public void remove(Long bookId) {
+        write(trie -> trie.remove(bookId));
+    }
+
+    /**
+     * Counts the loan once it commits; the suggestions change on the next {@link #flushLoans()}.
+     */
+    public void loaned(Long bookId) {
+        afterCommit(() -> newLoans.merge(bookId, 1L, Long::sum));
+    }
+
+    /**
+     * Applies the loans counted since the last flush, ranking each title and author they change once.
+     */
+    @Scheduled(initialDelayString = "${application.books.suggest.loan-flush-interval:PT1S}",
+            fixedDelayString = "${application.books.suggest.loan-flush-interval:PT1S}")
+    public void flushLoans() {
+        if( newLoans.isEmpty() ){
+            return;
+        }
+        Map<Long, Long> loans = new HashMap<>();
+        for( Long bookId : newLoans.keySet() ){
+            Long count = newLoans.remove(bookId);
+            if( count != null ){
+                loans.put(bookId, count);
+            }
+        }
+        write(trie -> trie.loaned(loans));
+    }
+
+    public long footprint() {
+        return read(trie -> trie.bytes);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${application.books.search.rebuild-interval:PT10M}",
+            fixedDelayString = "${application.books.search.rebuild-interval:PT10M}")
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Trie rebuilt = rebuild(() -> {
+            Trie trie = new Trie(maxSize);
+            List<Book> chunk = bookRepository.findNextByFilter(null, null, null, 0L, PageRequest.of(0, rebuildChunkSize));
+            while( !chunk.isEmpty() ){
+                Map<Long, Long> loans = new HashMap<>();
+                for( BookLoanCount count : loanRepository.countLoansByBook(chunk.stream().map(Book::getId).collect(Collectors.toList())) ){
+                    loans.put(count.getBookId(), count.getLoans());
+                }
+                chunk.forEach(book -> trie.insert(book.getId(), book.getTitle(), book.getAuthor(), loans.getOrDefault(book.getId(), 0L)));
+                if( chunk.size() < rebuildChunkSize ){
+                    break;
+                }
+                Long afterId = chunk.get(chunk.size() - 1).getId();
+                chunk = bookRepository.findNextByFilter(null, null, null, afterId, PageRequest.of(0, rebuildChunkSize));
+            }
+            trie.rank(trie.root);
+            return trie;
+        });
+        log.info(" suggester built with {} suggestions, {} nodes, about {} KiB in {} ms ", rebuilt.suggestions.size(),
+                rebuilt.nodes, rebuilt.bytes / 1024, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * The words of the text joined by single spaces, so suggestions match however the text was spaced or accented.
+     */
+    static String key(String text) {
+        return String.join(" ", BookSearchIndex.words(text));
+    }
+
+    /**
+     * A distinct title or author, shared by every book having it.
+     */
+    static class Entry {
+
+        private final String key;
+        private final String text;
+        private final String field;
+        private long loans;
+        private int books;
+
+        Entry(String key, String text, String field) {
+            this.key = key;
+            this.text = text;
+            this.field = field;
+        }
+    }
+
+    private static class Node {
+
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+
+        /**
+         * Sorted, children[i] follows keys[i]: arrays instead of maps keep the many small nodes compact.
+         */
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private Entry entry;
+        private Entry[] top = NO_ENTRIES;
+
+        Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index < 0 ? null : children[index];
+        }
+
+        Node addChild(char key) {
+            int index = -Arrays.binarySearch(keys, key) - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newKeys[index] = key;
+            newChildren[index] = new Node();
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[index];
+        }
+
+        void removeChild(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+    }
+
+    /**
+     * Not thread safe, guarded by the lock of the suggester.
+     */
+    static class Trie {
+
+        /**
+         * Ends every key, so a title and an author with the same text are distinct entries.
+         */
+        private static final char TITLE_END = '\u0001';
+        private static final char AUTHOR_END = '\u0002';
+
+        private static final Comparator<Entry> RANKING = Comparator.comparingLong((Entry entry) -> entry.loans).reversed()
+                .thenComparing(entry -> entry.key);
+
+        private final int maxSize;
+        private final Node root = new Node();
+        private final Map<String, Entry> suggestions = new HashMap<>();
+        private final Map<Long, IndexedBook> books = new HashMap<>();
+        private int nodes = 1;
+
+        /**
+         * Estimated bytes held, assuming a 64-bit JVM with compressed references: 12 byte object headers, 16 byte
+         * array headers and 4 byte references, everything aligned to 8 bytes. Changed with every node, entry and
+         * book, so reading it never walks the trie.
+         */
+        private long bytes = footprint(root);
+
+        Trie(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        List<Suggestion> suggest(String prefix, int size) {
+            Node node = root;
+            for( int i = 0; i < prefix.length() && node != null; i++ ){
+                node = node.child(prefix.charAt(i));
+            }
+            if( node == null ){
+                return Collections.emptyList();
+            }
+            List<Suggestion> found = new ArrayList<>(Math.min(size, node.top.length));
+            for( int i = 0; i < node.top.length && i < size; i++ ){
+                found.add(new Suggestion(node.top[i].text, node.top[i].field, node.top[i].loans));
+            }
+            return found;
+        }
+
+        /**
+         * Adds or replaces the book, with the given loans or, when null, the ones it already had.
+         */
+        void put(Long id, String title, String author, Long loans) {
+            IndexedBook previous = books.get(id);
+            long bookLoans = loans != null ? loans : previous == null ? 0 : previous.loans;
+            remove(id);
+            for( Entry entry : insert(id, title, author, bookLoans) ){
+                rank(entry.key);
+            }
+        }
+
+        /**
+         * Adds the book without ranking, for bulk loads followed by one {@link #rank(Node)} of the whole trie.
+         */
+        List<Entry> insert(Long id, String title, String author, long loans) {
+            IndexedBook book = new IndexedBook(loans);
+            addEntry(book, title, Suggestion.TITLE, TITLE_END);
+            addEntry(book, author, Suggestion.AUTHOR, AUTHOR_END);
+            if( books.put(id, book) == null ){
+                bytes += BOOK_BYTES;
+            }
+            return book.entries;
+        }
+
+        void remove(Long id) {
+            IndexedBook book = books.remove(id);
+            if( book == null ){
+                return;
+            }
+            bytes -= BOOK_BYTES;
+            for( Entry entry : book.entries ){
+                entry.loans -= book.loans;
+                entry.books--;
+                if( entry.books == 0 ){
+                    suggestions.remove(entry.key);
+                    bytes -= footprint(entry);
+                    find(entry.key).entry = null;
+                }
+                rank(entry.key);
+            }
+        }
+
+        /**
+         * Adds the loans of each book, then ranks every changed entry once however many of its books were loaned.
+         */
+        void loaned(Map<Long, Long> loans) {
+            Set<String> changed = new LinkedHashSet<>();
+            loans.forEach((id, count) -> {
+                IndexedBook book = books.get(id);
+                if( book == null ){
+                    return;
+                }
+                book.loans += count;
+                for( Entry entry : book.entries ){
+                    entry.loans += count;
+                    changed.add(entry.key);
+                }
+            });
+            changed.forEach(this::rank);
+        }
+
+        private void addEntry(IndexedBook book, String text, String field, char end) {
+            String words = key(text);
+            if( words.isEmpty() ){
+                return;
+            }
+            String key = words + end;
+            Entry entry = suggestions.get(key);
+            if( entry == null ){
+                entry = new Entry(key, text.trim(), field);
+                suggestions.put(key, entry);
+                bytes += footprint(entry);
+                Node node = root;
+                for( int i = 0; i < key.length(); i++ ){
+                    Node child = node.child(key.charAt(i));
+                    if( child == null ){
+                        bytes -= footprint(node);
+                        child = node.addChild(key.charAt(i));
+                        bytes += footprint(node) + footprint(child);
+                        nodes++;
+                    }
+                    node = child;
+                }
+                node.entry = entry;
+            }
+            entry.loans += book.loans;
+            entry.books++;
+            book.entries.add(entry);
+        }
+
+        private Node find(String key) {
+            Node node = root;
+            for( int i = 0; i < key.length(); i++ ){
+                node = node.child(key.charAt(i));
+            }
+            return node;
+        }
+
+        /**
+         * Ranks again the nodes from the end of the key up to the root, the only ones holding its entry, and drops
+         * the nodes left without entries.
+         */
+        private void rank(String key) {
+            Node[] path = new Node[key.length() + 1];
+            path[0] = root;
+            for( int i = 0; i < key.length(); i++ ){
+                path[i + 1] = path[i].child(key.charAt(i));
+            }
+            for( int i = key.length(); i >= 0; i-- ){
+                Node node = path[i];
+                if( i > 0 && node.entry == null && node.children.length == 0 ){
+                    bytes -= footprint(path[i - 1]) + footprint(node);
+                    path[i - 1].removeChild(key.charAt(i - 1));
+                    bytes += footprint(path[i - 1]);
+                    nodes--;
+                    continue;
+                }
+                setTop(node, top(node));
+            }
+        }
+
+        /**
+         * Ranks every node below the given one, children first.
+         */
+        void rank(Node node) {
+            for( Node child : node.children ){
+                rank(child);
+            }
+            setTop(node, top(node));
+        }
+
+        private void setTop(Node node, Entry[] top) {
+            bytes -= footprint(node);
+            node.top = top;
+            bytes += footprint(node);
+        }
+
+        private Entry[] top(Node node) {
+            List<Entry> candidates = new ArrayList<>();
+            if( node.entry != null ){
+                candidates.add(node.entry);
+            }
+            for( Node child : node.children ){
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            candidates.sort(RANKING);
+            return candidates.subList(0, Math.min(maxSize, candidates.size())).toArray(Node.NO_ENTRIES);
+        }
+
+        /**
+         * The indexed book with its entry list, its hash map node and the Long id.
+         */
+        private static final long BOOK_BYTES =
+                align(12 + 8 + 4) + align(12 + 4 + 4) + align(16 + 4 * 2) + align(12 + 4 * 4) + align(12 + 8);
+
+        /**
+         * The node alone, without its children.
+         */
+        private static long footprint(Node node) {
+            long bytes = align(12 + 4 * 4);
+            if( node.keys.length > 0 ){
+                bytes += align(16 + 2L * node.keys.length) + align(16 + 4L * node.children.length);
+            }
+            if( node.top.length > 0 ){
+                bytes += align(16 + 4L * node.top.length);
+            }
+            return bytes;
+        }
+
+        /**
+         * The entry, its hash map node and the key and text strings.
+         */
+        private static long footprint(Entry entry) {
+            return align(12 + 4 + 4 + 4 + 8 + 4) + align(12 + 4 * 4) + string(entry.key) + string(entry.text);
+        }
+
+        /**
+         * Walks the whole trie: what {@link #bytes} must add up to, for checks only.
+         */
+        long measure() {
+            long total = BOOK_BYTES * books.size();
+            for( Entry entry : suggestions.values() ){
+                total += footprint(entry);
+            }
+            List<Node> pending = new ArrayList<>(Collections.singletonList(root));
+            while( !pending.isEmpty() ){
+                Node node = pending.remove(pending.size() - 1);
+                total += footprint(node);
+                pending.addAll(Arrays.asList(node.children));
+            }
+            return total;
+        }
+
+        private static long string(String value) {
+            return align(12 + 4 + 4 + 1 + 1) + align(16 + 2L * value.length());
+        }
+
+        private static long align(long bytes) {
+            return (bytes + 7) & ~7L;
+        }
+    }
+
+    private static class IndexedBook {
+
+        private long loans;
+        private final List<Entry> entries = new ArrayList<>(2);
+
+        IndexedBook(long loans) {
+            this.loans = loans;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.paulina.libraryapi.service.search;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * An in-memory structure many threads read, kept in sync with the database by small changes applied after their
+ * transaction commits, and rebuilt now and then from the database while the current one keeps serving reads.
+ *
+ * @param <S> the structure, not thread safe itself
+ */
+abstract class SwappableIndex<S> {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private S state;
+
+    /**
+     * Changes made while a rebuild reads the database, applied again on the rebuilt structure.
+     */
+    private List<Consumer<S>> changedWhileRebuilding;
+
+    protected SwappableIndex(S empty) {
+        this.state = empty;
+    }
+
+    protected <R> R read(Function<S, R> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.apply(state);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Applies the change once the current transaction commits, or right away outside a transaction. Rolled back
+     * writes never reach the structure. The change must be idempotent, it may be applied twice during a rebuild.
+     */
+    protected void write(Consumer<S> change) {
+        afterCommit(() -> apply(change));
+    }
+
+    /**
+     * Runs the action once the current transaction commits, or right away outside a transaction.
+     */
+    protected static void afterCommit(Runnable action) {
+        if( !TransactionSynchronizationManager.isSynchronizationActive() ){
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Builds a new structure and swaps it with the current one, replaying the changes made in the meantime.
+     *
+     * @return the new structure, to be read by the caller only
+     */
+    protected S rebuild(Supplier<S> builder) {
+        lock.writeLock().lock();
+        try {
+            changedWhileRebuilding = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            S rebuilt = builder.get();
+            lock.writeLock().lock();
+            try {
+                changedWhileRebuilding.forEach(change -> change.accept(rebuilt));
+                state = rebuilt;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return rebuilt;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                changedWhileRebuilding = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void apply(Consumer<S> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(state);
+            if( changedWhileRebuilding != null ){
+                changedWhileRebuilding.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,4 @@
+-- the outbox is drained by status whatever the day, and a customer still pending is not enqueued again
+drop index ix_notification_date_status;
+create index ix_notification_status_id on notification_outbox (status, id);
+create index ix_notification_email_status on notification_outbox (customer_email, status);
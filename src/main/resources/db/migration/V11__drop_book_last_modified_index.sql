@@ -0,0 +1,3 @@
+-- book lists are validated from their own rows now: the catalog validator is gone, and its count(*) scanned the
+-- whole table anyway, the index only answered max(last_modified)
+drop index ix_book_last_modified;
@@ -0,0 +1,22 @@
+create table book (
+    id bigint generated by default as identity primary key,
+    title varchar(255),
+    author varchar(255),
+    isbn varchar(255)
+);
+
+create unique index ux_book_isbn on book (isbn);
+
+create table loan (
+    id bigint generated by default as identity primary key,
+    customer varchar(255),
+    customer_email varchar(255),
+    book_id bigint,
+    loan_date date,
+    returned boolean,
+    constraint fk_loan_book foreign key (book_id) references book (id)
+);
+
+create index ix_loan_book_returned on loan (book_id, returned);
+create index ix_loan_loan_date_returned on loan (loan_date, returned);
+create index ix_loan_customer on loan (customer);
@@ -0,0 +1,4 @@
+-- book_id while the loan is open, null once it is returned: the unique index allows a single open loan per book
+alter table loan add column open_book_id bigint as (case when returned = true then null else book_id end);
+
+create unique index ux_loan_open_book on loan (open_book_id);
@@ -0,0 +1,7 @@
+-- pooled sequences (increment = allocationSize) so Hibernate can assign ids without a round trip per row and batch inserts
+create sequence book_seq start with 1 increment by 50;
+create sequence loan_seq start with 1 increment by 50;
+
+-- past the rows inserted through the identity columns: the pooled optimizer hands out (value - 49 .. value]
+alter sequence book_seq restart with (select coalesce(max(id), 0) + 50 from book);
+alter sequence loan_seq restart with (select coalesce(max(id), 0) + 50 from loan);
@@ -0,0 +1,2 @@
+-- walked in order by the late-loan scan, which pages by (customer_email, id)
+create index ix_loan_customer_email_id on loan (customer_email, id);
@@ -0,0 +1,14 @@
+-- one row per customer and day: records who has to be, and who was, notified about late loans
+create table notification_outbox (
+    id bigint primary key,
+    customer_email varchar(255) not null,
+    notification_date date not null,
+    status varchar(16) not null,
+    attempts int not null default 0,
+    sent_at timestamp
+);
+
+create sequence notification_seq start with 1 increment by 50;
+
+create unique index ux_notification_email_date on notification_outbox (notification_date, customer_email);
+create index ix_notification_date_status on notification_outbox (notification_date, status, id);
@@ -0,0 +1,7 @@
+-- scheduled job leases: a node runs a job only while it holds the row of the job's name
+create table shedlock (
+    name varchar(64) primary key,
+    lock_until timestamp not null,
+    locked_at timestamp not null,
+    locked_by varchar(255) not null
+);
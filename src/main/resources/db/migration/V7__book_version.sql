@@ -0,0 +1,6 @@
+-- optimistic locking and http validators of books; existing rows start at version 0, modified at migration time
+alter table book add column version bigint default 0 not null;
+alter table book add column last_modified timestamp default current_timestamp not null;
+
+-- the catalog validator reads max(last_modified) with the count of books, both answered without a scan
+create index ix_book_last_modified on book (last_modified);
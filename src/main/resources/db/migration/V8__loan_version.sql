@@ -0,0 +1,2 @@
+-- optimistic locking of loans, existing rows start at version 0
+alter table loan add column version bigint default 0 not null;
@@ -0,0 +1,6 @@
+-- written on the primary by every node and read back on the read replica, the replication lag is how old the row is there
+create table replica_heartbeat (
+    id int primary key,
+    beat timestamp not null
+);
+insert into replica_heartbeat (id, beat) values (1, current_timestamp);
@@ -0,0 +1,129 @@
+package com.paulina.libraryapi.api.resource;
+
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.entity.Loan;
+import com.paulina.libraryapi.model.respository.BookRepository;
+import com.paulina.libraryapi.model.respository.LoanRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles({"test", "reactive"})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class ReactiveReadApiTest {
+
+    static String BOOK_API = "/api/books";
+    static String LOAN_API = "/api/loans";
+
+    @Autowired
+    WebTestClient client;
+
+    @Autowired
+    ApplicationContext context;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    Book casmurro;
+    Book borba;
+
+    @BeforeEach
+    public void setUp(){
+        casmurro = bookRepository.save(Book.builder().title("Dom Casmurro").author("Machado de Assis").isbn("101").build());
+        borba = bookRepository.save(Book.builder().title("Quincas Borba").author("Machado de Assis").isbn("102").build());
+        bookRepository.save(Book.builder().title("O Cortiço").author("Aluísio Azevedo").isbn("103").build());
+        loanRepository.saveAll(Arrays.asList(
+                Loan.builder().book(casmurro).customer("Camila").customerEmail("camila@email.com").loanDate(LocalDate.of(2026, 1, 2)).returned(true).build(),
+                Loan.builder().book(casmurro).customer("Artur").customerEmail("artur@email.com").loanDate(LocalDate.of(2026, 1, 5)).build(),
+                Loan.builder().book(borba).customer("Camila").customerEmail("camila@email.com").loanDate(LocalDate.of(2026, 1, 3)).build()));
+    }
+
+    @AfterEach
+    public void tearDown(){
+        loanRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("Deve servir a leitura pelos controllers reativos no lugar dos servlet")
+    public void reactiveControllersTest(){
+        assertThat(context.getBeansOfType(ReactiveBookController.class)).hasSize(1);
+        assertThat(context.getBeansOfType(BookController.class)).isEmpty();
+        assertThat(context.getBeansOfType(LoanController.class)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve obter um livro pelo id ou retornar 404")
+    public void getBookTest(){
+        client.get().uri(BOOK_API + "/" + casmurro.getId()).accept(MediaType.APPLICATION_JSON).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("id").isEqualTo(casmurro.getId())
+                .jsonPath("title").isEqualTo("Dom Casmurro")
+                .jsonPath("author").isEqualTo("Machado de Assis")
+                .jsonPath("isbn").isEqualTo("101");
+
+        client.get().uri(BOOK_API + "/" + (casmurro.getId() + 1000)).exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Deve filtrar e paginar os livros como a busca por exemplo")
+    public void findBooksTest(){
+        client.get().uri(BOOK_API + "?author=machado&page=0&size=1&sort=title,desc").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("content.length()").isEqualTo(1)
+                .jsonPath("content[0].title").isEqualTo("Quincas Borba")
+                .jsonPath("totalElements").isEqualTo(2)
+                .jsonPath("pageable.pageSize").isEqualTo(1)
+                .jsonPath("pageable.pageNumber").isEqualTo(0);
+
+        client.get().uri(BOOK_API + "?sort=loans").exchange().expectStatus().isBadRequest();
+        client.get().uri(BOOK_API + "?count=false").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Deve listar os emprestimos de um livro com o livro")
+    public void loansByBookTest(){
+        client.get().uri(BOOK_API + "/" + casmurro.getId() + "/loans?sort=loanDate,desc").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("totalElements").isEqualTo(2)
+                .jsonPath("content[0].customer").isEqualTo("Artur")
+                .jsonPath("content[0].email").isEqualTo("artur@email.com")
+                .jsonPath("content[0].isbn").isEqualTo("101")
+                .jsonPath("content[0].book.title").isEqualTo("Dom Casmurro");
+
+        client.get().uri(BOOK_API + "/" + (casmurro.getId() + 1000) + "/loans").exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Deve buscar os emprestimos pelo isbn do livro ou pelo customer")
+    public void findLoansTest(){
+        client.get().uri(LOAN_API + "?isbn=102&customer=Artur&sort=id").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("totalElements").isEqualTo(2)
+                .jsonPath("content[*].customer").value(customers -> assertThat(customers).asList().containsExactlyInAnyOrder("Artur", "Camila"));
+
+        client.get().uri(LOAN_API).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("totalElements").isEqualTo(0);
+    }
+}
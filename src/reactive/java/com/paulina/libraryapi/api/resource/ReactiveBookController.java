@@ -0,0 +1,64 @@
+package com.paulina.libraryapi.api.resource;
+
+import com.paulina.libraryapi.api.dto.BookDTO;
+import com.paulina.libraryapi.api.dto.LoanDTO;
+import com.paulina.libraryapi.api.mapper.BookMapper;
+import com.paulina.libraryapi.api.mapper.LoanMapper;
+import com.paulina.libraryapi.model.respository.ReactiveBookRepository;
+import com.paulina.libraryapi.model.respository.ReactiveLoanRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+/**
+ * The read endpoints of {@link BookController} for the reactive deployment: same urls, same DTOs.
+ */
+@RestController
+@RequestMapping("/api/books")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveBookController {
+
+    private final ReactiveBookRepository repository;
+    private final ReactiveLoanRepository loanRepository;
+    private final BookMapper bookMapper;
+    private final LoanMapper loanMapper;
+
+    @GetMapping("{id}")
+    public Mono<BookDTO> get( @PathVariable Long id ){
+        log.info(" obtaining details for book id: {} ", id);
+        return repository.findById(id)
+                .map( bookMapper::toDto )
+                .switchIfEmpty( Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)) );
+    }
+
+    /**
+     * Slices and cursors are not served here, those requests are rejected instead of answered with a page.
+     */
+    @GetMapping(params = {"!after", "count!=false"})
+    public Mono<Page<BookDTO>> find( BookDTO dto, Pageable pageRequest ){
+        return Mono.defer(() -> repository.findAll(bookMapper.toEntity(dto), pageRequest))
+                .map(page -> page.map(bookMapper::toDto))
+                .onErrorMap(IllegalArgumentException.class, ex -> new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage()));
+    }
+
+    @GetMapping("{id}/loans")
+    public Mono<Page<LoanDTO>> loansByBook( @PathVariable Long id, Pageable pageable ){
+        return repository.existsById(id)
+                .flatMap(exists -> exists
+                        ? loanRepository.findByBook(id, pageable)
+                        : Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .map(page -> page.map(loanMapper::toDto))
+                .onErrorMap(IllegalArgumentException.class, ex -> new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage()));
+    }
+}
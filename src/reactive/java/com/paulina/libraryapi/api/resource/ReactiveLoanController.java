@@ -0,0 +1,39 @@
+package com.paulina.libraryapi.api.resource;
+
+import com.paulina.libraryapi.api.dto.LoanDTO;
+import com.paulina.libraryapi.api.dto.LoanFilterDTO;
+import com.paulina.libraryapi.api.mapper.LoanMapper;
+import com.paulina.libraryapi.model.respository.ReactiveLoanRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+/**
+ * The read endpoint of {@link LoanController} for the reactive deployment: same url, same DTOs.
+ */
+@RestController
+@RequestMapping("/api/loans")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveLoanController {
+
+    private final ReactiveLoanRepository repository;
+    private final LoanMapper loanMapper;
+
+    /**
+     * Slices and cursors are not served here, those requests are rejected instead of answered with a page.
+     */
+    @GetMapping(params = {"!after", "count!=false"})
+    public Mono<Page<LoanDTO>> find(LoanFilterDTO dto, Pageable pageRequest){
+        return Mono.defer(() -> repository.findByBookIsbnOrCustomer(dto.getIsbn(), dto.getCustomer(), pageRequest))
+                .map(page -> page.map(loanMapper::toDto))
+                .onErrorMap(IllegalArgumentException.class, ex -> new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage()));
+    }
+}
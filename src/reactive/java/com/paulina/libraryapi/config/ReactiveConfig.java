@@ -0,0 +1,65 @@
+package com.paulina.libraryapi.config;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.web.ReactivePageableHandlerMethodArgumentResolver;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.result.method.annotation.ArgumentResolverConfigurer;
+import reactor.core.Disposable;
+
+/**
+ * The reactive deployment, built with the {@code reactive} Maven profile and run with the {@code reactive} Spring
+ * profile, see {@code application-reactive.properties}: the read endpoints are served by
+ * {@code ReactiveBookController} and {@code ReactiveLoanController} on Netty event loops, reading the database
+ * through R2DBC. Writes, imports and exports are left to the servlet deployment.
+ * <p>
+ * Jobs, caches and the search index still use JPA, as in the servlet deployment.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfig implements WebFluxConfigurer, DisposableBean {
+
+    /**
+     * Tomcat is on the classpath too, and would otherwise be preferred as the reactive server.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    private ConnectionFactory connectionFactory;
+
+    /**
+     * Pooled when the url starts with {@code r2dbc:pool:}. The connection factory is not a bean: Boot would then
+     * skip the JPA {@code DataSource}.
+     */
+    @Bean
+    public DatabaseClient databaseClient(@Value("${spring.r2dbc.url}") String url,
+                                         @Value("${spring.r2dbc.username:}") String username,
+                                         @Value("${spring.r2dbc.password:}") String password) {
+        connectionFactory = ConnectionFactoryBuilder.withUrl(url).username(username).password(password).build();
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionFactory instanceof Disposable) {
+            ((Disposable) connectionFactory).dispose();
+        }
+    }
+
+    /**
+     * Reads {@code page}, {@code size} and {@code sort} like Spring MVC does for the servlet controllers.
+     */
+    @Override
+    public void configureArgumentResolvers(ArgumentResolverConfigurer configurer) {
+        configurer.addCustomResolver(new ReactivePageableHandlerMethodArgumentResolver());
+    }
+}
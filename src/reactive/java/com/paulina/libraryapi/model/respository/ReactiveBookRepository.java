@@ -0,0 +1,97 @@
+package com.paulina.libraryapi.model.respository;
+
+import com.paulina.libraryapi.model.entity.Book;
+import io.r2dbc.spi.Row;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non-blocking reads of books for the reactive deployment, with the same results as {@link BookRepository}.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveBookRepository {
+
+    private static final String SELECT = "select b.id, b.title, b.author, b.isbn from book b";
+
+    private static final Map<String, String> COLUMNS = new HashMap<>();
+
+    static {
+        COLUMNS.put("id", "b.id");
+        COLUMNS.put("title", "b.title");
+        COLUMNS.put("author", "b.author");
+        COLUMNS.put("isbn", "b.isbn");
+    }
+
+    private final DatabaseClient client;
+
+    public Mono<Book> findById(Long id) {
+        return client.sql(SELECT + " where b.id = :id")
+                .bind("id", id)
+                .map(ReactiveBookRepository::book)
+                .one();
+    }
+
+    public Mono<Boolean> existsById(Long id) {
+        return client.sql("select count(*) from book b where b.id = :id")
+                .bind("id", id)
+                .map(row -> row.get(0, Long.class) > 0)
+                .one();
+    }
+
+    /**
+     * Same matching as the {@code Example} search of {@code BookService.find}: ignore case, containing, null values
+     * ignored.
+     *
+     * @throws IllegalArgumentException when sorted by something else than a column of the book
+     */
+    public Mono<Page<Book>> findAll(Book filter, Pageable pageable) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        StringBuilder where = new StringBuilder(" where 1 = 1");
+        if (filter.getId() != null) {
+            where.append(" and b.id = :id");
+            params.put("id", filter.getId());
+        }
+        containing(where, params, "title", filter.getTitle());
+        containing(where, params, "author", filter.getAuthor());
+        containing(where, params, "isbn", filter.getIsbn());
+
+        String select = SELECT + where + ReactiveQueries.orderBy(pageable.getSort(), COLUMNS, "b.id") + ReactiveQueries.limit(pageable);
+        Mono<List<Book>> content = ReactiveQueries.bind(client.sql(select), params)
+                .map(ReactiveBookRepository::book)
+                .all()
+                .collectList();
+        Mono<Long> total = ReactiveQueries.bind(client.sql("select count(*) from book b" + where), params)
+                .map(row -> row.get(0, Long.class))
+                .one();
+        return Mono.zip(content, total).map(page -> new PageImpl<>(page.getT1(), pageable, page.getT2()));
+    }
+
+    private static void containing(StringBuilder where, Map<String, Object> params, String column, String value) {
+        if (value != null) {
+            where.append(" and lower(b.").append(column).append(") like lower(concat('%', :").append(column).append(", '%'))");
+            params.put(column, value);
+        }
+    }
+
+    private static Book book(Row row) {
+        return Book.builder()
+                .id(row.get("id", Long.class))
+                .title(row.get("title", String.class))
+                .author(row.get("author", String.class))
+                .isbn(row.get("isbn", String.class))
+                .build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.paulina.libraryapi.model.respository;
+
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.entity.Loan;
+import io.r2dbc.spi.Row;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non-blocking reads of loans, each with its book, for the reactive deployment, with the same results as
+ * {@link LoanRepository}.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveLoanRepository {
+
+    private static final String FROM = " from loan l join book b on b.id = l.book_id";
+
+    private static final String SELECT = "select l.id, l.customer, l.customer_email, l.loan_date, l.returned, " +
+            "b.id as book_id, b.title, b.author, b.isbn" + FROM;
+
+    private static final Map<String, String> COLUMNS = new HashMap<>();
+
+    static {
+        COLUMNS.put("id", "l.id");
+        COLUMNS.put("customer", "l.customer");
+        COLUMNS.put("customerEmail", "l.customer_email");
+        COLUMNS.put("loanDate", "l.loan_date");
+        COLUMNS.put("returned", "l.returned");
+        COLUMNS.put("book.id", "b.id");
+        COLUMNS.put("book.title", "b.title");
+        COLUMNS.put("book.isbn", "b.isbn");
+    }
+
+    private final DatabaseClient client;
+
+    /**
+     * @throws IllegalArgumentException when sorted by something else than a column of the loan or its book
+     */
+    public Mono<Page<Loan>> findByBook(Long bookId, Pageable pageable) {
+        Map<String, Object> params = Collections.singletonMap("bookId", bookId);
+        return page(" where l.book_id = :bookId", params, pageable);
+    }
+
+    /**
+     * Loans of the book with the isbn or of the customer; none when both are null, like the JPQL equality.
+     *
+     * @throws IllegalArgumentException when sorted by something else than a column of the loan or its book
+     */
+    public Mono<Page<Loan>> findByBookIsbnOrCustomer(String isbn, String customer, Pageable pageable) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        List<String> conditions = new ArrayList<>();
+        if (isbn != null) {
+            conditions.add("b.isbn = :isbn");
+            params.put("isbn", isbn);
+        }
+        if (customer != null) {
+            conditions.add("l.customer = :customer");
+            params.put("customer", customer);
+        }
+        if (conditions.isEmpty()) {
+            // an invalid sort is still rejected, as it would be with conditions
+            ReactiveQueries.orderBy(pageable.getSort(), COLUMNS, "l.id");
+            return Mono.just(new PageImpl<>(Collections.emptyList(), pageable, 0));
+        }
+        return page(" where " + String.join(" or ", conditions), params, pageable);
+    }
+
+    private Mono<Page<Loan>> page(String where, Map<String, Object> params, Pageable pageable) {
+        String select = SELECT + where + ReactiveQueries.orderBy(pageable.getSort(), COLUMNS, "l.id") + ReactiveQueries.limit(pageable);
+        Mono<List<Loan>> content = ReactiveQueries.bind(client.sql(select), params)
+                .map(ReactiveLoanRepository::loan)
+                .all()
+                .collectList();
+        Mono<Long> total = ReactiveQueries.bind(client.sql("select count(*)" + FROM + where), params)
+                .map(row -> row.get(0, Long.class))
+                .one();
+        return Mono.zip(content, total).map(page -> new PageImpl<>(page.getT1(), pageable, page.getT2()));
+    }
+
+    private static Loan loan(Row row) {
+        Book book = Book.builder()
+                .id(row.get("book_id", Long.class))
+                .title(row.get("title", String.class))
+                .author(row.get("author", String.class))
+                .isbn(row.get("isbn", String.class))
+                .build();
+        return Loan.builder()
+                .id(row.get("id", Long.class))
+                .customer(row.get("customer", String.class))
+                .customerEmail(row.get("customer_email", String.class))
+                .loanDate(row.get("loan_date", LocalDate.class))
+                .returned(row.get("returned", Boolean.class))
+                .book(book)
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package com.paulina.libraryapi.model.respository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.util.Map;
+
+/**
+ * Paging and sorting for the plain SQL of the R2DBC repositories, which have no JPQL to derive them from.
+ */
+final class ReactiveQueries {
+
+    private ReactiveQueries() {
+    }
+
+    /**
+     * Orders by the columns of the sorted properties, then by the tiebreak so pages do not overlap.
+     *
+     * @param columns the sortable properties and their columns: request values never reach the SQL
+     * @throws IllegalArgumentException when sorted by a property that is not in {@code columns}
+     */
+    static String orderBy(Sort sort, Map<String, String> columns, String tiebreak) {
+        StringBuilder orderBy = new StringBuilder(" order by ");
+        for (Sort.Order order : sort) {
+            String column = columns.get(order.getProperty());
+            if (column == null) {
+                throw new IllegalArgumentException("Cannot sort by " + order.getProperty());
+            }
+            orderBy.append(column).append(order.isAscending() ? " asc, " : " desc, ");
+        }
+        return orderBy.append(tiebreak).toString();
+    }
+
+    static String limit(Pageable pageable) {
+        return pageable.isUnpaged() ? "" : " limit " + pageable.getPageSize() + " offset " + pageable.getOffset();
+    }
+
+    static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, Map<String, Object> params) {
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            spec = spec.bind(param.getKey(), param.getValue());
+        }
+        return spec;
+    }
+}
@@ -0,0 +1,171 @@
+package com.paulina.libraryapi.api.resource;
+
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.entity.Loan;
+import com.paulina.libraryapi.model.repository.SqlRecorder;
+import com.paulina.libraryapi.model.respository.BookRepository;
+import com.paulina.libraryapi.model.respository.LoanRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Statements issued by the endpoints, against the database. The controller tests mock the services, so they check
+ * the responses but not what serving them costs; a lazy association read per row shows up here as a statement count
+ * growing with the page size.
+ */
+@ActiveProfiles("test")
+@SpringBootTest(properties = SqlRecorder.PROPERTY)
+@AutoConfigureMockMvc
+public class ApiQueryCostTest {
+
+    static String BOOK_API = "/api/books";
+    static String LOAN_API = "/api/loans";
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    List<Book> books = new ArrayList<>();
+    List<Loan> loans = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp(){
+        for (int i = 0; i < 10; i++) {
+            Book book = bookRepository.save(Book.builder().title("Livro " + i).author("Jana").isbn("isbn-" + i).build());
+            books.add(book);
+            loans.add(loanRepository.save(Loan.builder().book(book).customer("Camila").customerEmail("camila@email.com")
+                    .loanDate(LocalDate.now()).build()));
+            loanRepository.save(Loan.builder().book(books.get(0)).customer("Artur").loanDate(LocalDate.now()).returned(true).build());
+        }
+    }
+
+    @AfterEach
+    public void tearDown(){
+        loanRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("Deve listar os emprestimos com no maximo duas consultas para qualquer tamanho de pagina")
+    public void findLoansStatementCountTest() throws Exception {
+        for (int size : new int[]{ 2, 5, 10 }) {
+            // execucao
+            List<String> statements = SqlRecorder.record(() -> mvc.perform(MockMvcRequestBuilders.get(LOAN_API + "?customer=Camila&size=" + size))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("content.length()").value(size))
+                    .andExpect(jsonPath("content[0].book.title").exists()));
+
+            // verificacao
+            assertThat(statements).hasSizeLessThanOrEqualTo(2);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve listar uma fatia ou a pagina seguinte ao cursor com uma unica consulta")
+    public void findLoansWithoutCountStatementCountTest() throws Exception {
+        for (int size : new int[]{ 2, 5, 10 }) {
+            // execucao
+            List<String> slice = SqlRecorder.record(() -> mvc.perform(MockMvcRequestBuilders.get(LOAN_API + "?customer=Camila&count=false&size=" + size))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("content.length()").value(size)));
+            List<String> cursor = SqlRecorder.record(() -> mvc.perform(MockMvcRequestBuilders.get(LOAN_API + "?customer=Camila&after=&size=" + size))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("content.length()").value(size)));
+
+            // verificacao
+            assertThat(slice).hasSize(1);
+            assertThat(cursor).hasSize(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve listar os emprestimos de um livro sem uma consulta por emprestimo")
+    public void loansByBookStatementCountTest() throws Exception {
+        for (int size : new int[]{ 2, 5, 10 }) {
+            // execucao
+            List<String> statements = SqlRecorder.record(() -> mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "/" + books.get(0).getId() + "/loans?size=" + size))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("content.length()").value(size)));
+
+            // verificacao: the book, unless cached, the page and its count
+            assertThat(statements).hasSizeLessThanOrEqualTo(3);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve buscar os livros com a pagina e a contagem")
+    public void findBooksStatementCountTest() throws Exception {
+        for (int size : new int[]{ 2, 5 }) {
+            // execucao
+            List<String> statements = SqlRecorder.record(() -> mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "?author=Jana&size=" + size))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("content.length()").value(size)));
+
+            // verificacao
+            assertThat(statements).hasSizeLessThanOrEqualTo(2);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve listar uma fatia ou a pagina seguinte ao cursor dos livros com uma unica consulta, validada ou nao")
+    public void findBooksWithoutCountStatementCountTest() throws Exception {
+        for (int size : new int[]{ 2, 5, 10 }) {
+            // execucao
+            List<String> slice = SqlRecorder.record(() -> mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "?author=Jana&count=false&size=" + size))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("content.length()").value(size)));
+            List<String> cursor = SqlRecorder.record(() -> mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "?author=Jana&after=&size=" + size))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("content.length()").value(size)));
+            String etag = mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "?author=Jana&after=&size=" + size))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            List<String> notModified = SqlRecorder.record(() -> mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "?author=Jana&after=&size=" + size)
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified()));
+
+            // verificacao
+            assertThat(slice).hasSize(1);
+            assertThat(cursor).hasSize(1);
+            assertThat(notModified).hasSize(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve obter um livro e devolver um emprestimo com uma unica instrucao")
+    public void singleStatementTest() throws Exception {
+        // execucao
+        List<String> get = SqlRecorder.record(() -> mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "/" + books.get(1).getId()))
+                .andExpect(status().isOk()));
+        List<String> returned = SqlRecorder.record(() -> mvc.perform(MockMvcRequestBuilders.patch(LOAN_API + "/" + loans.get(1).getId())
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"returned\": true}"))
+                .andExpect(status().isOk()));
+
+        // verificacao
+        assertThat(get).hasSizeLessThanOrEqualTo(1);
+        assertThat(returned).hasSize(1);
+        assertThat(returned.get(0)).startsWith("update loan");
+    }
+}
@@ -2,9 +2,17 @@ package com.paulina.libraryapi.api.resource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.paulina.libraryapi.api.dto.BookDTO;
+import com.paulina.libraryapi.api.dto.ImportErrorDTO;
+import com.paulina.libraryapi.api.dto.ImportReportDTO;
+import com.paulina.libraryapi.api.conditional.Validators;
 import com.paulina.libraryapi.api.exception.BusinessException;
+import com.paulina.libraryapi.api.importer.BookImporter;
+import com.paulina.libraryapi.api.pagination.Cursors;
 import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.projection.BookVersion;
+import com.paulina.libraryapi.model.projection.Suggestion;
 import com.paulina.libraryapi.service.BookService;
+import com.paulina.libraryapi.service.LoanService;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -18,17 +26,25 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -46,6 +62,14 @@ public class BookControllerTest {
     @MockBean
     BookService service;
 
+    @MockBean
+    LoanService loanService;
+
+    @MockBean
+    BookImporter importer;
+
+    static Instant MODIFIED = Instant.parse("2026-03-01T10:15:30.250Z");
+
     @Test
     @DisplayName("Deve criar um livro com sucesso")
     public void createBookTest() throws Exception {
@@ -140,7 +164,7 @@ public class BookControllerTest {
     @Test
     @DisplayName("Deve deletar um livro")
     public void deleteBookTest() throws Exception{
-        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.of(Book.builder().id(1L).build()));
+        BDDMockito.given(service.getForUpdate(Mockito.anyLong())).willReturn(Optional.of(Book.builder().id(1L).build()));
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.delete(BOOK_API.concat("/"+1));
 
@@ -150,7 +174,7 @@ public class BookControllerTest {
     @Test
     @DisplayName("Deve retornar resource not found quando nao encontrar um livro para deletar")
     public void deleteInexistentBookTest() throws Exception{
-        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(service.getForUpdate(Mockito.anyLong())).willReturn(Optional.empty());
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.delete(BOOK_API.concat("/"+1));
 
@@ -164,16 +188,19 @@ public class BookControllerTest {
 
         Book updateBook = Book.builder().id(id).author("Artur").title("As Aventuras").isbn("123456").build();
         String json = new ObjectMapper().writeValueAsString(updateBook);
+        updateBook.setVersion(1L);
+        updateBook.setLastModified(MODIFIED);
         Book updatingBook = Book.builder().id(id).title("Sem nocao").author("Luciana").isbn("123456").build();
 
 
-        BDDMockito.given(service.getById(id)).willReturn(Optional.of(updatingBook));
+        BDDMockito.given(service.getForUpdate(id)).willReturn(Optional.of(updatingBook));
 
         BDDMockito.given(service.update(updatingBook)).willReturn(updateBook);
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put(BOOK_API.concat("/"+11)).content(json).accept(MediaType.APPLICATION_JSON).contentType(MediaType.APPLICATION_JSON);
 
         mvc.perform(request).andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
                 .andExpect(jsonPath("id").value(id))
                 .andExpect( jsonPath("title").value(createNewBook().getTitle()))
                 .andExpect( jsonPath("author").value(createNewBook().getAuthor()))
@@ -186,7 +213,7 @@ public class BookControllerTest {
     public void updateInexistentBookTest() throws Exception{
         String json = new ObjectMapper().writeValueAsString(createNewBook());
 
-        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(service.getForUpdate(Mockito.anyLong())).willReturn(Optional.empty());
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put(BOOK_API.concat("/"+11)).content(json).accept(MediaType.APPLICATION_JSON).contentType(MediaType.APPLICATION_JSON);
 
@@ -216,6 +243,218 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve filtrar livros sem contar o total de elementos")
+    public void findBooksSliceTest() throws Exception{
+        //cenario
+        Book book = Book.builder().id(11L).author("Artur").title("As Aventuras").isbn("123456").build();
+
+        BDDMockito.given(service.findSlice(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new SliceImpl<Book>(Arrays.asList(book), PageRequest.of(0, 1), true));
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("?title=Aventuras&page=0&size=1&count=false")).accept(MediaType.APPLICATION_JSON);
+
+        //verificacao
+        mvc.perform(request).andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("number").value(0))
+                .andExpect(jsonPath("size").value(1))
+                .andExpect(jsonPath("hasNext").value(true))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+
+        Mockito.verify(service, Mockito.never()).find(Mockito.any(Book.class), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve listar livros a partir de um cursor")
+    public void findBooksAfterCursorTest() throws Exception{
+        //cenario
+        Book first = Book.builder().id(11L).author("Artur").title("As Aventuras").isbn("123456").build();
+        Book second = Book.builder().id(12L).author("Artur").title("As Aventuras 2").isbn("123457").build();
+
+        BDDMockito.given(service.findAfter(Mockito.any(Book.class), Mockito.isNull(), Mockito.eq(2)))
+                .willReturn(Arrays.asList(first, second));
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("?title=Aventuras&after=&size=1")).accept(MediaType.APPLICATION_JSON);
+
+        //verificacao
+        mvc.perform(request).andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].id").value(11))
+                .andExpect(jsonPath("size").value(1))
+                .andExpect(jsonPath("next").value(Cursors.encode(11L)))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve retornar bad request para um cursor invalido")
+    public void findBooksInvalidCursorTest() throws Exception{
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("?after=" + Cursors.encode("abc"))).accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request).andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Invalid cursor"));
+    }
+
+    @Test
+    @DisplayName("Deve buscar livros por palavras na ordem de relevancia")
+    public void searchBooksTest() throws Exception{
+        //cenario
+        Book best = Book.builder().id(12L).author("Machado de Assis").title("Memórias Póstumas").isbn("123457").build();
+        Book other = Book.builder().id(11L).author("Artur").title("Memórias").isbn("123456").build();
+        BDDMockito.given(service.search("memorias machado", 5)).willReturn(Arrays.asList(best, other));
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("/search?q=memorias machado&size=5")).accept(MediaType.APPLICATION_JSON);
+
+        //verificacao
+        mvc.perform(request).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("[0].id").value(12))
+                .andExpect(jsonPath("[1].id").value(11));
+        Mockito.verify(service, Mockito.never()).find(Mockito.any(Book.class), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve sugerir titulos e autores pelo prefixo, os mais emprestados primeiro")
+    public void suggestTest() throws Exception{
+        //cenario
+        BDDMockito.given(service.suggest("mach", 10)).willReturn(Arrays.asList(
+                new Suggestion("Machado de Assis", Suggestion.AUTHOR, 7), new Suggestion("Machado", Suggestion.TITLE, 2)));
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("/suggest?prefix=mach")).accept(MediaType.APPLICATION_JSON);
+
+        //verificacao
+        mvc.perform(request).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("[0].text").value("Machado de Assis"))
+                .andExpect(jsonPath("[0].field").value("author"))
+                .andExpect(jsonPath("[0].loans").value(7))
+                .andExpect(jsonPath("[1].field").value("title"));
+    }
+
+    @Test
+    @DisplayName("Deve importar livros em ndjson e retornar o relatorio das linhas rejeitadas")
+    public void importBooksTest() throws Exception{
+        ImportReportDTO report = new ImportReportDTO(1, 1,
+                Collections.singletonList(new ImportErrorDTO(2, Collections.singletonList("ISBN já cadastrado"))));
+        BDDMockito.given(importer.importNdjson(Mockito.any(InputStream.class))).willReturn(report);
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API.concat("/import"))
+                .contentType(BookImporter.NDJSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"As Aventuras\",\"author\":\"Artur\",\"isbn\":\"1\"}\n");
+
+        mvc.perform(request).andExpect(status().isOk())
+                .andExpect(jsonPath("imported").value(1))
+                .andExpect(jsonPath("rejected").value(1))
+                .andExpect(jsonPath("errors[0].line").value(2))
+                .andExpect(jsonPath("errors[0].errors[0]").value("ISBN já cadastrado"));
+        Mockito.verify(importer, Mockito.never()).importCsv(Mockito.any(InputStream.class));
+    }
+
+    @Test
+    @DisplayName("Deve obter um livro com o ETag da versao e a data de modificacao")
+    public void getBookValidatorsTest() throws Exception{
+        // cenario
+        Book book = Book.builder().id(11L).author("Artur").title("As Aventuras").isbn("123456").version(4L).lastModified(MODIFIED).build();
+        BDDMockito.given(service.getById(11L)).willReturn(Optional.of(book));
+
+        // execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("/11")).accept(MediaType.APPLICATION_JSON);
+
+        // verificacao
+        mvc.perform(request).andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(header().dateValue(HttpHeaders.LAST_MODIFIED, MODIFIED.toEpochMilli() / 1000 * 1000))
+                .andExpect(jsonPath("title").value("As Aventuras"));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 304 sem carregar o livro quando o ETag ou a data de modificacao forem os atuais")
+    public void getBookNotModifiedTest() throws Exception{
+        // cenario
+        BDDMockito.given(service.getVersion(11L)).willReturn(Optional.of(new BookVersion(4L, MODIFIED)));
+
+        // execucao
+        MockHttpServletRequestBuilder byEtag = MockMvcRequestBuilders.get(BOOK_API.concat("/11"))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"4\"");
+        MockHttpServletRequestBuilder byDate = MockMvcRequestBuilders.get(BOOK_API.concat("/11"))
+                .header(HttpHeaders.IF_MODIFIED_SINCE, MODIFIED.toEpochMilli());
+
+        // verificacao
+        mvc.perform(byEtag).andExpect(status().isNotModified()).andExpect(content().string(""));
+        mvc.perform(byDate).andExpect(status().isNotModified());
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve retornar 304 para uma pagina de livros enquanto os livros da pagina nao mudarem")
+    public void findBooksNotModifiedTest() throws Exception{
+        // cenario
+        Book book = Book.builder().id(11L).author("Artur").title("As Aventuras").isbn("123456").version(4L).build();
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 10), 1));
+        BDDMockito.given(service.findAfter(Mockito.any(Book.class), Mockito.isNull(), Mockito.eq(11)))
+                .willReturn(Arrays.asList(book));
+        String pageEtag = Validators.weakEtag(Arrays.asList(book), 1L);
+        String cursorEtag = Validators.weakEtag(Arrays.asList(book), null);
+
+        // execucao e verificacao
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?title=Aventuras&page=0&size=10")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, pageEtag));
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?title=Aventuras&page=0&size=10")).header(HttpHeaders.IF_NONE_MATCH, pageEtag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, pageEtag));
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?title=Aventuras&after=&size=10")).header(HttpHeaders.IF_NONE_MATCH, cursorEtag))
+                .andExpect(status().isNotModified());
+
+        // cenario: the book of the page was modified
+        book.setVersion(5L);
+
+        // execucao e verificacao
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?title=Aventuras&page=0&size=10")).header(HttpHeaders.IF_NONE_MATCH, pageEtag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)));
+    }
+
+    @Test
+    @DisplayName("Deve recusar a atualizacao de um livro com If-Match de outra versao")
+    public void updateBookPreconditionFailedTest() throws Exception{
+        // cenario
+        Book book = Book.builder().id(11L).author("Artur").title("As Aventuras").isbn("123456").version(4L).build();
+        BDDMockito.given(service.getForUpdate(11L)).willReturn(Optional.of(book));
+        String json = new ObjectMapper().writeValueAsString(createNewBook());
+
+        // execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put(BOOK_API.concat("/11")).content(json)
+                .contentType(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_MATCH, "\"3\"");
+
+        // verificacao
+        mvc.perform(request).andExpect(status().isPreconditionFailed());
+        Mockito.verify(service, Mockito.never()).update(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("Deve retornar conflito quando outra requisicao atualizar o livro antes")
+    public void updateBookConflictTest() throws Exception{
+        // cenario
+        Book book = Book.builder().id(11L).author("Artur").title("As Aventuras").isbn("123456").version(4L).build();
+        BDDMockito.given(service.getForUpdate(11L)).willReturn(Optional.of(book));
+        BDDMockito.given(service.update(book)).willThrow(new ObjectOptimisticLockingFailureException(Book.class, 11L));
+        String json = new ObjectMapper().writeValueAsString(createNewBook());
+
+        // execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put(BOOK_API.concat("/11")).content(json)
+                .contentType(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_MATCH, "\"4\"");
+
+        // verificacao
+        mvc.perform(request).andExpect(status().isConflict()).andExpect(jsonPath("errors", hasSize(1)));
+    }
+
     private BookDTO createNewBook() {
         return BookDTO.builder().author("Artur").title("As Aventuras").isbn("123456").build();
     }
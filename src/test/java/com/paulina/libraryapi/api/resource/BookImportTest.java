@@ -0,0 +1,168 @@
+package com.paulina.libraryapi.api.resource;
+
+import com.paulina.libraryapi.api.importer.BookImporter;
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.respository.BookRepository;
+import com.paulina.libraryapi.service.search.BookSearchIndex;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "application.books.import.chunk-size=2",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.paulina.libraryapi.api.resource.BookImportTest$BeforeBookInsert"
+})
+@AutoConfigureMockMvc
+public class BookImportTest {
+
+    static String IMPORT_API = "/api/books/import";
+
+    /**
+     * Runs an action once, on the thread about to insert books, after the chunk checked its ISBNs.
+     */
+    public static class BeforeBookInsert implements StatementInspector {
+
+        static final AtomicReference<Runnable> ACTION = new AtomicReference<>();
+
+        @Override
+        public String inspect(String sql) {
+            if( sql.startsWith("insert into book") ){
+                Runnable action = ACTION.getAndSet(null);
+                if( action != null ){
+                    action.run();
+                }
+            }
+            return sql;
+        }
+    }
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    BookSearchIndex searchIndex;
+
+    @BeforeEach
+    public void setUp(){
+        repository.deleteAll();
+        repository.save(Book.builder().title("Cadastrado").author("Jana").isbn("registered").build());
+    }
+
+    @Test
+    @DisplayName("Deve importar livros em ndjson em varios lotes reportando as linhas rejeitadas")
+    public void importNdjsonTest() throws Exception{
+        String body = "{\"title\":\"Livro 1\",\"author\":\"Artur\",\"isbn\":\"1\"}\n" +
+                "{\"title\":\"\",\"author\":\"Artur\",\"isbn\":\"2\"}\n" +
+                "\n" +
+                "{\"title\":\"Livro 3\",\"author\":\"Artur\",\"isbn\":\"registered\"}\n" +
+                "{\"title\":\"Livro 4\",\"author\":\"Artur\",\"isbn\":\"1\"}\n" +
+                "{\"title\":\"Livro 5\",\n" +
+                "{\"title\":\"Livro 6\",\"author\":\"Artur\",\"isbn\":\"6\"}\n" +
+                "{\"title\":\"Livro 7\",\"author\":\"Artur\",\"isbn\":\"7\"}";
+
+        mvc.perform(post(BookImporter.NDJSON, body)).andExpect(status().isOk())
+                .andExpect(jsonPath("imported").value(3))
+                .andExpect(jsonPath("rejected").value(4))
+                .andExpect(jsonPath("errors", hasSize(4)))
+                .andExpect(jsonPath("errors[0].line").value(2))
+                .andExpect(jsonPath("errors[0].errors[0]").value(startsWith("title: ")))
+                .andExpect(jsonPath("errors[1].line").value(4))
+                .andExpect(jsonPath("errors[1].errors[0]").value("ISBN já cadastrado"))
+                .andExpect(jsonPath("errors[2].line").value(5))
+                .andExpect(jsonPath("errors[2].errors[0]").value("ISBN já cadastrado"))
+                .andExpect(jsonPath("errors[3].line").value(6))
+                .andExpect(jsonPath("errors[3].errors[0]").value("Malformed line"));
+
+        assertThat(repository.count()).isEqualTo(4);
+        assertThat(repository.findByIsbn("1")).hasValueSatisfying(book -> assertThat(book.getTitle()).isEqualTo("Livro 1"));
+        assertThat(searchIndex.search("livro 7", 10)).extracting(Book::getIsbn).containsExactly("7");
+    }
+
+    @Test
+    @DisplayName("Deve importar livros em csv com valores entre aspas")
+    public void importCsvTest() throws Exception{
+        String body = "isbn,Title,author\n" +
+                "10,\"Guerra, \"\"e\"\" Paz\",Tolstoi\n" +
+                "registered,Cadastrado,Jana\n" +
+                "11,Sem autor\n" +
+                "12,\"Aspas abertas,Jana\n";
+
+        mvc.perform(post(BookImporter.CSV, body)).andExpect(status().isOk())
+                .andExpect(jsonPath("imported").value(1))
+                .andExpect(jsonPath("rejected").value(3))
+                .andExpect(jsonPath("errors[0].line").value(3))
+                .andExpect(jsonPath("errors[1].line").value(4))
+                .andExpect(jsonPath("errors[1].errors[0]").value(startsWith("author: ")))
+                .andExpect(jsonPath("errors[2].line").value(5))
+                .andExpect(jsonPath("errors[2].errors[0]").value("Malformed line"));
+
+        assertThat(repository.findByIsbn("10")).hasValueSatisfying(book -> {
+            assertThat(book.getTitle()).isEqualTo("Guerra, \"e\" Paz");
+            assertThat(book.getAuthor()).isEqualTo("Tolstoi");
+        });
+    }
+
+    @Test
+    @DisplayName("Deve reportar como duplicado o livro cadastrado por outra requisicao durante a importacao do lote")
+    public void importConcurrentCreateTest() throws Exception{
+        // cenario
+        BeforeBookInsert.ACTION.set(() -> CompletableFuture.runAsync(() ->
+                repository.save(Book.builder().title("Concorrente").author("Jana").isbn("21").build())).join());
+        String body = "{\"title\":\"Livro 20\",\"author\":\"Artur\",\"isbn\":\"20\"}\n" +
+                "{\"title\":\"Livro 21\",\"author\":\"Artur\",\"isbn\":\"21\"}\n" +
+                "{\"title\":\"Livro 22\",\"author\":\"Artur\",\"isbn\":\"22\"}";
+
+        // execucao
+        mvc.perform(post(BookImporter.NDJSON, body)).andExpect(status().isOk())
+                .andExpect(jsonPath("imported").value(2))
+                .andExpect(jsonPath("rejected").value(1))
+                .andExpect(jsonPath("errors", hasSize(1)))
+                .andExpect(jsonPath("errors[0].line").value(2))
+                .andExpect(jsonPath("errors[0].errors[0]").value("ISBN já cadastrado"));
+
+        // verificacao
+        assertThat(BeforeBookInsert.ACTION.get()).isNull();
+        assertThat(repository.count()).isEqualTo(4);
+        assertThat(repository.findByIsbn("20")).isPresent();
+        assertThat(repository.findByIsbn("21")).hasValueSatisfying(book -> assertThat(book.getTitle()).isEqualTo("Concorrente"));
+        assertThat(searchIndex.search("livro 20", 10)).extracting(Book::getIsbn).containsExactly("20");
+    }
+
+    @Test
+    @DisplayName("Deve retornar bad request quando faltar uma coluna no cabecalho do csv")
+    public void importCsvMissingColumnTest() throws Exception{
+        mvc.perform(post(BookImporter.CSV, "title,author\nLivro,Artur\n")).andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Missing CSV column: isbn"));
+
+        assertThat(repository.count()).isEqualTo(1);
+    }
+
+    private MockHttpServletRequestBuilder post(String contentType, String body) {
+        return MockMvcRequestBuilders.post(IMPORT_API)
+                .contentType(contentType)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(body);
+    }
+}
@@ -0,0 +1,84 @@
+package com.paulina.libraryapi.api.resource;
+
+import com.paulina.libraryapi.api.dto.LoanDTO;
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.respository.BookRepository;
+import com.paulina.libraryapi.model.respository.LoanRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class LoanConcurrencyTest {
+
+    private static final int REQUESTS = 2000;
+    private static final int CLIENTS = 64;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Test
+    @DisplayName("Deve realizar um unico emprestimo quando varios clientes pedem o mesmo livro ao mesmo tempo")
+    public void concurrentLoansOfSameBookTest() throws Exception {
+        // cenario
+        Book book = bookRepository.save(Book.builder().title("As Aventuras").author("Artur").isbn("concurrent-123").build());
+        LoanDTO dto = LoanDTO.builder().isbn(book.getIsbn()).customer("Camila").email("camila@email.com").build();
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<HttpStatus>> responses = new ArrayList<>();
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                Callable<HttpStatus> request = () -> {
+                    start.await();
+                    ResponseEntity<String> response = restTemplate.postForEntity("/api/loans", dto, String.class);
+                    return response.getStatusCode();
+                };
+                responses.add(clients.submit(request));
+            }
+
+            // execucao
+            start.countDown();
+            int created = 0;
+            int rejected = 0;
+            for (Future<HttpStatus> response : responses) {
+                HttpStatus status = response.get();
+                if (status == HttpStatus.CREATED) {
+                    created++;
+                } else if (status == HttpStatus.BAD_REQUEST) {
+                    rejected++;
+                }
+            }
+
+            // verificacao
+            assertThat(created).isEqualTo(1);
+            assertThat(rejected).isEqualTo(REQUESTS - 1);
+            assertThat(loanRepository.existsByBookAndNotReturned(book)).isTrue();
+            assertThat(loanRepository.count()).isEqualTo(1);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.paulina.libraryapi.api.dto.LoanDTO;
 import com.paulina.libraryapi.api.dto.LoanFilterDTO;
 import com.paulina.libraryapi.api.dto.ReturnedLoanDTO;
 import com.paulina.libraryapi.api.exception.BusinessException;
+import com.paulina.libraryapi.api.exporter.LoanExporter;
+import com.paulina.libraryapi.api.pagination.Cursors;
 import com.paulina.libraryapi.model.entity.Book;
 import com.paulina.libraryapi.model.entity.Loan;
 import com.paulina.libraryapi.service.BookService;
@@ -21,13 +23,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultMatcher;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
@@ -35,6 +42,8 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -42,6 +51,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ActiveProfiles("test")
 @AutoConfigureMockMvc
 @WebMvcTest(controllers = LoanController.class)
+@Import(LoanExporter.class)
 public class LoanControllerTest {
 
     static final String LOAN_API = "/api/loans";
@@ -114,8 +124,6 @@ public class LoanControllerTest {
     public void returnBookTest() throws Exception{
         //cenario
         ReturnedLoanDTO dto = ReturnedLoanDTO.builder().returned(true).build();
-        Loan loan = Loan.builder().id(1l).build();
-        BDDMockito.given(loanService.getById(Mockito.anyLong())).willReturn(Optional.of(loan));
 
         String json = new ObjectMapper().writeValueAsString(dto);
 
@@ -126,7 +134,9 @@ public class LoanControllerTest {
                         .content(json)
         ).andExpect(status().isOk());
 
-        Mockito.verify(loanService, Mockito.times(1)).update(loan);
+        Mockito.verify(loanService, Mockito.times(1)).returnLoan(1L);
+        Mockito.verify(loanService, Mockito.never()).getForUpdate(Mockito.anyLong());
+        Mockito.verify(loanService, Mockito.never()).update(Mockito.any(Loan.class));
     }
 
     @Test
@@ -136,7 +146,7 @@ public class LoanControllerTest {
         ReturnedLoanDTO dto = ReturnedLoanDTO.builder().returned(true).build();
         String json = new ObjectMapper().writeValueAsString(dto);
 
-        BDDMockito.given(loanService.getById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.willThrow(new EmptyResultDataAccessException(1)).given(loanService).returnLoan(1L);
 
 
         mvc.perform(
@@ -148,6 +158,45 @@ public class LoanControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve retornar conflito quando tentar devolver um livro ja devolvido")
+    public void returnReturnedBookTest() throws Exception{
+        //cenario
+        ReturnedLoanDTO dto = ReturnedLoanDTO.builder().returned(true).build();
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        BDDMockito.willThrow(new ObjectOptimisticLockingFailureException(Loan.class, 1L)).given(loanService).returnLoan(1L);
+
+        mvc.perform(
+                MockMvcRequestBuilders.patch(LOAN_API.concat("/1"))
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json)
+        ).andExpect(status().isConflict())
+                .andExpect(jsonPath("errors", Matchers.hasSize(1)));
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro ao reabrir um emprestimo com livro emprestado novamente")
+    public void reopenLoanedBookTest() throws Exception{
+        //cenario
+        ReturnedLoanDTO dto = ReturnedLoanDTO.builder().returned(false).build();
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        Loan loan = LoanServiceTest.createLoan();
+        loan.setId(1L);
+        BDDMockito.given(loanService.getForUpdate(1L)).willReturn(Optional.of(loan));
+        BDDMockito.given(loanService.update(loan)).willThrow(new BusinessException("Book already loaned"));
+
+        mvc.perform(
+                MockMvcRequestBuilders.patch(LOAN_API.concat("/1"))
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json)
+        ).andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Book already loaned"));
+    }
+
     @Test
     @DisplayName("Deve filtrar emprestimos")
     public void findLoansTest() throws Exception{
@@ -172,6 +221,114 @@ public class LoanControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve filtrar emprestimos sem contar o total de elementos")
+    public void findLoansSliceTest() throws Exception{
+        //cenario
+        Loan loan = LoanServiceTest.createLoan();
+
+        BDDMockito.given(loanService.findSlice(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
+                .willReturn(new SliceImpl<Loan>(Arrays.asList(loan), PageRequest.of(0, 10), false));
+
+        String queryString = String.format("?isbn=%s&customer=%s&page=0&size=10&count=false", loan.getBook().getIsbn(), loan.getCustomer());
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(LOAN_API.concat(queryString)).accept(MediaType.APPLICATION_JSON);
+
+        //verificacao
+        mvc.perform(request).andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("size").value(10))
+                .andExpect(jsonPath("hasNext").value(false))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve filtrar emprestimos a partir de um cursor")
+    public void findLoansAfterCursorTest() throws Exception{
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").build();
+        LocalDate loanDate = LocalDate.of(2022, 4, 20);
+        Loan loan = Loan.builder().id(8l).customer("Camila").book(book).loanDate(loanDate).build();
+
+        BDDMockito.given(loanService.findAfter(Mockito.any(LoanFilterDTO.class), Mockito.eq(loanDate), Mockito.eq(7l), Mockito.eq(11)))
+                .willReturn(Arrays.asList(loan));
+
+        String queryString = String.format("?isbn=%s&after=%s&size=10", book.getIsbn(), Cursors.encode(loanDate, 7l));
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(LOAN_API.concat(queryString)).accept(MediaType.APPLICATION_JSON);
+
+        //verificacao
+        mvc.perform(request).andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].isbn").value("123"))
+                .andExpect(jsonPath("size").value(10))
+                .andExpect(jsonPath("next").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve exportar emprestimos em csv")
+    public void exportLoansCsvTest() throws Exception{
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").title("Guerra, e Paz").build();
+        Loan loan = Loan.builder().id(8l).customer("Camila").customerEmail("camila@email.com").book(book)
+                .loanDate(LocalDate.of(2022, 4, 20)).returned(true).build();
+        givenExportedLoans(loan);
+
+        //execucao
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("/export?isbn=123")))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        //verificacao
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", Matchers.startsWith(LoanExporter.CSV)))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=loans.csv"))
+                .andExpect(content().string("id,isbn,title,customer,email,loanDate,returned\n" +
+                        "8,123,\"Guerra, e Paz\",Camila,camila@email.com,2022-04-20,true\n"));
+        org.assertj.core.api.Assertions.assertThat(result.getRequest().getAsyncContext().getTimeout())
+                .isEqualTo(TimeUnit.HOURS.toMillis(1));
+        Mockito.verify(loanService).exportLoans(Mockito.eq(LoanFilterDTO.builder().isbn("123").build()), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Deve exportar emprestimos em ndjson")
+    public void exportLoansNdjsonTest() throws Exception{
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").title("As Aventuras").build();
+        givenExportedLoans(Loan.builder().id(8l).customer("Camila").book(book).loanDate(LocalDate.of(2022, 4, 20)).build(),
+                Loan.builder().id(9l).customer("Artur").book(book).loanDate(LocalDate.of(2022, 4, 21)).build());
+
+        //execucao
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("/export?format=ndjson")))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        //verificacao
+        String[] lines = mvc.perform(MockMvcRequestBuilders.asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", Matchers.startsWith(LoanExporter.NDJSON)))
+                .andReturn().getResponse().getContentAsString().split("\n");
+        org.assertj.core.api.Assertions.assertThat(lines).hasSize(2);
+        org.assertj.core.api.Assertions.assertThat(new ObjectMapper().readTree(lines[1]).get("customer").asText()).isEqualTo("Artur");
+        org.assertj.core.api.Assertions.assertThat(new ObjectMapper().readTree(lines[1]).get("title").asText()).isEqualTo("As Aventuras");
+    }
+
+    @Test
+    @DisplayName("Deve retornar bad request para um formato de exportacao invalido")
+    public void exportLoansInvalidFormatTest() throws Exception{
+        mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("/export?format=xml")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Invalid export format"));
+        Mockito.verify(loanService, Mockito.never()).exportLoans(Mockito.any(), Mockito.any());
+    }
+
+    private void givenExportedLoans(Loan... loans) {
+        BDDMockito.given(loanService.exportLoans(Mockito.any(LoanFilterDTO.class), Mockito.any())).willAnswer(invocation -> {
+            Consumer<Loan> consumer = invocation.getArgument(1);
+            Arrays.stream(loans).forEach(consumer);
+            return (long) loans.length;
+        });
+    }
+
     public Loan createLoan () {
         Book book = Book.builder().id(1l).isbn("123").build();
 
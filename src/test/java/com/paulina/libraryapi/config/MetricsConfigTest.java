@@ -0,0 +1,84 @@
+package com.paulina.libraryapi.config;
+
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.respository.BookRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ActiveProfiles({"test", "profiling"})
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+public class MetricsConfigTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @AfterEach
+    public void tearDown(){
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("Deve medir a rota, o servico e o mapeamento de uma requisicao")
+    public void requestTimersTest() throws Exception {
+        // cenario
+        Book book = bookRepository.save(Book.builder().title("As Aventuras").author("Artur").isbn("123").build());
+
+        // execucao
+        mvc.perform(MockMvcRequestBuilders.get("/api/books/" + book.getId())).andExpect(status().isOk());
+
+        // verificacao
+        Timer route = meterRegistry.get("http.server.requests").tag("uri", "/api/books/{id}").timer();
+        assertThat(route.count()).isEqualTo(1);
+        assertThat(route.takeSnapshot().histogramCounts()).isNotEmpty();
+        assertThat(meterRegistry.get("library.service").tag("class", "BookService").tag("method", "getById").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("library.mapping").tag("class", "BookMapper").tag("method", "toDto").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Nao deve medir o mapeamento fora das execucoes de profiling")
+    public void mappingTimerDisabledByDefaultTest() {
+        new ApplicationContextRunner().withUserConfiguration(MetricsConfig.class)
+                .run(context -> assertThat(context).doesNotHaveBean("mappingTimerAdvisor").hasBean("serviceTimerAdvisor"));
+    }
+
+    @Test
+    @DisplayName("Deve expor os timers, a espera e a saturacao do pool de conexoes no formato do Prometheus")
+    public void prometheusScrapeTest() throws Exception {
+        // cenario
+        mvc.perform(MockMvcRequestBuilders.get("/api/books?title=Aventuras")).andExpect(status().isOk());
+
+        // execucao e verificacao
+        mvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{exception=\"None\",method=\"GET\",outcome=\"SUCCESS\",status=\"200\",uri=\"/api/books\",le=\"0.05\",}")))
+                .andExpect(content().string(containsString("library_service_seconds_bucket{class=\"BookService\",method=\"find\",")))
+                .andExpect(content().string(containsString("hikaricp_connections_pending{")))
+                .andExpect(content().string(containsString("hikaricp_connections_acquire_seconds_bucket{")));
+    }
+}
@@ -0,0 +1,230 @@
+package com.paulina.libraryapi.config;
+
+import com.paulina.libraryapi.api.dto.LoanFilterDTO;
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.entity.Loan;
+import com.paulina.libraryapi.model.projection.LateLoan;
+import com.paulina.libraryapi.service.BookService;
+import com.paulina.libraryapi.service.LoanService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two H2 databases stand for the primary and the replica; rows written to only one of them tell where a read went.
+ * The heartbeat is copied by hand where a real replica would replicate it.
+ */
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingConfigTest.PRIMARY_URL,
+        "spring.datasource.username=sa",
+        "application.datasource.replica.url=" + ReplicaRoutingConfigTest.REPLICA_URL,
+        "application.datasource.replica.username=sa",
+        "application.datasource.replica.lag-check-interval=PT1H"
+})
+@AutoConfigureMockMvc
+public class ReplicaRoutingConfigTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    ReplicaLagMonitor lagMonitor;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    DataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    DataSource replicaDataSource;
+
+    JdbcTemplate primary;
+    JdbcTemplate replica;
+
+    @BeforeAll
+    public static void migrateReplica(){
+        Flyway.configure().dataSource(REPLICA_URL, "sa", "").load().migrate();
+    }
+
+    @BeforeEach
+    public void setUp(){
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+        for (JdbcTemplate database : new JdbcTemplate[]{ primary, replica }) {
+            database.update("insert into book (id, title, author, isbn) values (1001, 'Dom Casmurro', 'Machado de Assis', '1001')");
+        }
+        primary.update("insert into book (id, title, author, isbn) values (1002, 'Somente no primario', 'Jana', 'primary-only')");
+        replica.update("insert into book (id, title, author, isbn) values (1003, 'Somente na replica', 'Jana', 'replica-only')");
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        catchUp();
+    }
+
+    @AfterEach
+    public void tearDown(){
+        for (JdbcTemplate database : new JdbcTemplate[]{ primary, replica }) {
+            database.update("delete from loan");
+            database.update("delete from book");
+        }
+    }
+
+    private void catchUp(){
+        lagMonitor.check();
+        replicate();
+        lagMonitor.check();
+    }
+
+    private void replicate(){
+        Timestamp beat = primary.queryForObject("select beat from replica_heartbeat where id = 1", Timestamp.class);
+        replica.update("update replica_heartbeat set beat = ? where id = 1", beat);
+    }
+
+    @Test
+    @DisplayName("Deve ler nas transacoes somente leitura da replica e escrever no primario")
+    public void routeReadOnlyTransactionsTest(){
+        // cenario
+        replica.update("insert into loan (customer, customer_email, book_id, loan_date) values ('Camila', 'camila@email.com', 1003, ?)",
+                Date.valueOf(LocalDate.now().minusDays(10)));
+
+        // execucao
+        Book saved = bookService.save(Book.builder().title("Novo").author("Artur").isbn("novo").build());
+
+        // verificacao
+        assertThat(lagMonitor.isReplicaUsable()).isTrue();
+        Book jana = Book.builder().author("jana").build();
+        assertThat(janaBooks()).containsExactly("replica-only");
+        assertThat(bookService.findSlice(jana, PageRequest.of(0, 10)).getContent()).extracting(Book::getIsbn).containsExactly("replica-only");
+        assertThat(bookService.findAfter(jana, null, 10)).extracting(Book::getIsbn).containsExactly("replica-only");
+        Book replicaOnly = bookService.find(jana, PageRequest.of(0, 10)).getContent().get(0);
+        assertThat(loanService.getLoansByBook(replicaOnly, PageRequest.of(0, 10)).getTotalElements()).isEqualTo(1);
+        LoanFilterDTO camila = LoanFilterDTO.builder().customer("Camila").build();
+        assertThat(loanService.find(camila, PageRequest.of(0, 10)).getTotalElements()).isEqualTo(1);
+        assertThat(loanService.findSlice(camila, PageRequest.of(0, 10)).getContent()).hasSize(1);
+        List<Loan> loans = loanService.findAfter(camila, null, null, 10);
+        assertThat(loans).hasSize(1);
+        assertThat(loanService.getById(loans.get(0).getId())).isPresent();
+        List<LateLoan> lateLoans = loanService.getLateLoans(null, 10, 0, 1);
+        assertThat(lateLoans).extracting(LateLoan::getCustomerEmail).containsExactly("camila@email.com");
+        // the cached lookups and the reads of an update
+        assertThat(bookService.getBookByIsbn("primary-only")).isPresent();
+        assertThat(bookService.getById(1003L)).isEmpty();
+        assertThat(loanService.getForUpdate(loans.get(0).getId())).isEmpty();
+        assertThat(primary.queryForObject("select count(*) from book where id = ?", Integer.class, saved.getId())).isEqualTo(1);
+        assertThat(replica.queryForObject("select count(*) from book where id = ?", Integer.class, saved.getId())).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve ler do primario enquanto a replica estiver atrasada ou inacessivel")
+    public void replicaLagFallbackTest(){
+        // cenario
+        replica.update("update replica_heartbeat set beat = ? where id = 1", Timestamp.from(Instant.now().minusSeconds(60)));
+
+        // execucao
+        lagMonitor.check();
+
+        // verificacao
+        assertThat(lagMonitor.isReplicaUsable()).isFalse();
+        assertThat(meterRegistry.get("library.replica.lag").gauge().value()).isGreaterThanOrEqualTo(60);
+        assertThat(janaBooks()).containsExactly("primary-only");
+
+        // cenario
+        replica.execute("alter table replica_heartbeat rename to replica_heartbeat_off");
+
+        // execucao
+        lagMonitor.check();
+
+        // verificacao
+        assertThat(lagMonitor.isReplicaUsable()).isFalse();
+        assertThat(lagMonitor.getLag()).isNull();
+
+        // execucao
+        replica.execute("alter table replica_heartbeat_off rename to replica_heartbeat");
+        catchUp();
+
+        // verificacao
+        assertThat(lagMonitor.isReplicaUsable()).isTrue();
+        assertThat(janaBooks()).containsExactly("replica-only");
+    }
+
+    @Test
+    @DisplayName("Deve consultar e atualizar pelo primario o livro que a replica tem numa versao anterior")
+    public void updateBookOlderOnReplicaTest() throws Exception {
+        // cenario
+        primary.update("update book set title = 'Dom Casmurro revisto', version = 2 where id = 1001");
+
+        // execucao
+        mvc.perform(MockMvcRequestBuilders.get("/api/books/1001"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""))
+                .andExpect(jsonPath("title").value("Dom Casmurro revisto"));
+        mvc.perform(MockMvcRequestBuilders.get("/api/books/1001").header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+                .andExpect(status().isNotModified());
+        mvc.perform(MockMvcRequestBuilders.put("/api/books/1001")
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Memorias Postumas\", \"author\": \"Machado de Assis\", \"isbn\": \"1001\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(jsonPath("title").value("Memorias Postumas"));
+        mvc.perform(MockMvcRequestBuilders.delete("/api/books/1002"))
+                .andExpect(status().isNoContent());
+
+        // verificacao
+        assertThat(bookService.getBookByIsbn("1001")).hasValueSatisfying(book -> assertThat(book.getVersion()).isEqualTo(3));
+        assertThat(primary.queryForObject("select title from book where id = 1001", String.class)).isEqualTo("Memorias Postumas");
+        assertThat(primary.queryForObject("select count(*) from book where id = 1002", Integer.class)).isZero();
+        assertThat(replica.queryForObject("select version from book where id = 1001", Long.class)).isZero();
+    }
+
+    /**
+     * The books of Jana, read by a read-only transaction: the replica has only one of them, the primary another.
+     */
+    private List<String> janaBooks(){
+        return bookService.find(Book.builder().author("jana").build(), PageRequest.of(0, 10)).getContent().stream()
+                .map(Book::getIsbn).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,40 @@
+package com.paulina.libraryapi.config;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class SchemaIndexVerifierTest {
+
+    @Test
+    @DisplayName("Deve aceitar o schema criado pelas migrations")
+    public void migratedSchemaTest() throws Exception {
+        DataSource dataSource = migratedDataSource("migrated");
+
+        new SchemaIndexVerifier(dataSource).afterPropertiesSet();
+    }
+
+    @Test
+    @DisplayName("Deve falhar na inicializacao quando faltar um indice esperado")
+    public void missingIndexTest() {
+        DataSource dataSource = migratedDataSource("missing");
+        new JdbcTemplate(dataSource).execute("drop index ix_loan_customer");
+
+        Throwable exception = catchThrowable(() -> new SchemaIndexVerifier(dataSource).afterPropertiesSet());
+
+        assertThat(exception).isInstanceOf(IllegalStateException.class).hasMessageContaining("loan[customer]");
+    }
+
+    private DataSource migratedDataSource(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        return dataSource;
+    }
+}
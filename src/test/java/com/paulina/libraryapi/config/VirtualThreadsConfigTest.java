@@ -0,0 +1,61 @@
+package com.paulina.libraryapi.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.task.TaskSchedulerCustomizer;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class VirtualThreadsConfigTest {
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withUserConfiguration(VirtualThreadsConfig.class);
+
+    private final Callable<Boolean> onVirtualThread = () -> VirtualThreads.isVirtual(Thread.currentThread());
+
+    @Test
+    @DisplayName("Nao deve trocar os executores sem a propriedade")
+    public void disabledByDefaultTest() {
+        runner.run(context -> assertThat(context).doesNotHaveBean(VirtualThreadsConfig.class));
+    }
+
+    @Test
+    @DisplayName("Deve falhar na inicializacao numa JVM sem virtual threads")
+    public void unavailableTest() {
+        assumeFalse(VirtualThreads.available());
+
+        runner.withPropertyValues("application.threads.virtual=true").run(context -> {
+            assertThat(context).hasFailed();
+            assertThat(context.getStartupFailure()).hasStackTraceContaining("Virtual threads need Java 21 or later");
+        });
+    }
+
+    @Test
+    @DisplayName("Deve executar as tarefas assincronas e agendadas em virtual threads")
+    public void virtualThreadsTest() {
+        assumeTrue(VirtualThreads.available());
+
+        runner.withPropertyValues("application.threads.virtual=true").run(context -> {
+            // cenario
+            ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+            context.getBean(TaskSchedulerCustomizer.class).customize(scheduler);
+            scheduler.initialize();
+
+            // execucao
+            boolean async = context.getBean(AsyncTaskExecutor.class).submit(onVirtualThread).get();
+            boolean scheduled = scheduler.submit(onVirtualThread).get();
+            scheduler.shutdown();
+
+            // verificacao
+            assertThat(async).isTrue();
+            assertThat(scheduled).isTrue();
+        });
+    }
+}
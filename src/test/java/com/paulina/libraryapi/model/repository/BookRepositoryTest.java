@@ -2,6 +2,7 @@ package com.paulina.libraryapi.model.repository;
 
 
 import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.projection.BookVersion;
 import com.paulina.libraryapi.model.respository.BookRepository;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
@@ -10,10 +11,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.AssertionsForClassTypes.*;
 import org.junit.jupiter.api.Assertions.*;
@@ -99,6 +104,58 @@ public class BookRepositoryTest {
 
     }
 
+    @Test
+    @DisplayName("Deve buscar livros pelos filtros a partir do id informado")
+    public void findNextByFilterTest(){
+        //cenario
+        Book first = Book.builder().title("Meu Livro").isbn("1").author("Jana").build();
+        Book second = Book.builder().title("Outro livro").isbn("2").author("Jana").build();
+        Book other = Book.builder().title("Revista").isbn("3").author("Jana").build();
+        entityManager.persist(first);
+        entityManager.persist(second);
+        entityManager.persist(other);
+
+        //execucao
+        List<Book> firstPage = repository.findNextByFilter("LIVRO", null, null, 0L, PageRequest.of(0, 1));
+        List<Book> nextPage = repository.findNextByFilter("LIVRO", null, null, first.getId(), PageRequest.of(0, 1));
+        List<Book> lastPage = repository.findNextByFilter("LIVRO", null, null, second.getId(), PageRequest.of(0, 1));
+
+        //verificacao
+        org.assertj.core.api.Assertions.assertThat(firstPage).containsExactly(first);
+        org.assertj.core.api.Assertions.assertThat(nextPage).containsExactly(second);
+        org.assertj.core.api.Assertions.assertThat(lastPage).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve retornar os isbns ja cadastrados entre os informados")
+    public void findIsbnsInTest(){
+        //cenario
+        entityManager.persist(Book.builder().title("Meu Livro").isbn("1").author("Jana").build());
+        entityManager.persist(Book.builder().title("Outro livro").isbn("2").author("Jana").build());
+
+        //execucao
+        Set<String> isbns = repository.findIsbnsIn(Arrays.asList("2", "3"));
+
+        //verificacao
+        org.assertj.core.api.Assertions.assertThat(isbns).containsExactly("2");
+    }
+
+    @Test
+    @DisplayName("Deve obter a versao de um livro, incrementada a cada alteracao")
+    public void findVersionsTest(){
+        //cenario
+        Book book = entityManager.persistFlushFind(createNewBook());
+        entityManager.persistAndFlush(Book.builder().title("Outro").isbn("5678").author("Jana").build());
+        book.setTitle("Meu Livro Revisado");
+        entityManager.flush();
+
+        //execucao
+        Optional<BookVersion> version = repository.findVersionById(book.getId());
+
+        //verificacao
+        org.assertj.core.api.Assertions.assertThat(version).contains(new BookVersion(1L, book.getLastModified()));
+    }
+
     private Book createNewBook() {
         return Book.builder().title("Meu Livro").isbn("1234").author("Jana").build();
     }
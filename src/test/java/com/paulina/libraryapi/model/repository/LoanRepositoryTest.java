@@ -3,6 +3,8 @@ package com.paulina.libraryapi.model.repository;
 
 import com.paulina.libraryapi.model.entity.Book;
 import com.paulina.libraryapi.model.entity.Loan;
+import com.paulina.libraryapi.model.projection.BookLoanCount;
+import com.paulina.libraryapi.model.projection.LateLoan;
 import com.paulina.libraryapi.model.respository.LoanRepository;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
@@ -13,17 +15,23 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.sql.DataSource;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
-@DataJpaTest
+@DataJpaTest(properties = SqlRecorder.PROPERTY)
 public class LoanRepositoryTest {
 
     @Autowired
@@ -32,6 +40,8 @@ public class LoanRepositoryTest {
     @Autowired
     private TestEntityManager entityManager;
 
+    @Autowired
+    private DataSource dataSource;
 
     private Book createNewBook() {
         return Book.builder().title("Meu Livro").isbn("1234").author("Jana").build();
@@ -55,6 +65,50 @@ public class LoanRepositoryTest {
         assertThat(exists).isTrue();
     }
 
+    @Test
+    @DisplayName("Deve devolver somente um emprestimo aberto, incrementando a versao")
+    public void markReturnedTest(){
+        // cenario
+        Book book = createNewBook();
+        entityManager.persist(book);
+        Loan loan = entityManager.persistFlushFind(Loan.builder().book(book).customer("Camila").loanDate(LocalDate.now()).build());
+        entityManager.clear();
+
+        //execucao
+        int first = repository.markReturned(loan.getId());
+        int second = repository.markReturned(loan.getId());
+        int missing = repository.markReturned(loan.getId() + 1000);
+
+        //verificacao
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isZero();
+        assertThat(missing).isZero();
+        Loan returned = entityManager.find(Loan.class, loan.getId());
+        assertThat(returned.getReturned()).isTrue();
+        assertThat(returned.getVersion()).isEqualTo(loan.getVersion() + 1);
+    }
+
+    @Test
+    @DisplayName("Deve contar os emprestimos de cada livro, devolvidos ou nao")
+    public void countLoansByBookTest(){
+        // cenario
+        Book book = createNewBook();
+        Book other = Book.builder().title("Outro Livro").isbn("5678").author("Jana").build();
+        Book never = Book.builder().title("Nunca Emprestado").isbn("9012").author("Jana").build();
+        entityManager.persist(book);
+        entityManager.persist(other);
+        entityManager.persist(never);
+        entityManager.persist(Loan.builder().book(book).customer("Camila").loanDate(LocalDate.now()).returned(true).build());
+        entityManager.persist(Loan.builder().book(book).customer("Jana").loanDate(LocalDate.now()).build());
+        entityManager.persist(Loan.builder().book(other).customer("Artur").loanDate(LocalDate.now()).build());
+
+        // execucao
+        List<BookLoanCount> counts = repository.countLoansByBook(Arrays.asList(book.getId(), never.getId()));
+
+        // verificacao
+        Assertions.assertThat(counts).containsExactly(new BookLoanCount(book.getId(), 2L));
+    }
+
     @Test
     @DisplayName("Deve buscar um emprestimo pelo isbn do livro ou pelo customer")
     public  void findBookByISBNOrCustomerTest(){
@@ -74,6 +128,92 @@ public class LoanRepositoryTest {
         assertThat(result.getTotalElements()).isEqualTo(1);
     }
 
+    @Test
+    @DisplayName("Deve buscar uma fatia de emprestimos pelo isbn do livro ou pelo customer sem contar o total")
+    public void findSliceByBookISBNOrCustomerTest(){
+        Book book = createNewBook();
+        entityManager.persist(book);
+
+        Loan returned = Loan.builder().book(book).customer("Camila").loanDate(LocalDate.now().minusDays(1)).returned(true).build();
+        Loan loan = Loan.builder().book(book).customer("Camila").loanDate(LocalDate.now()).build();
+        entityManager.persist(returned);
+        entityManager.persist(loan);
+
+        Slice<Loan> first = repository.findSliceByBookISBNOrCustomer("1234", "Camila", PageRequest.of(0, 1));
+        Slice<Loan> last = repository.findSliceByBookISBNOrCustomer("1234", "Camila", PageRequest.of(1, 1));
+
+        Assertions.assertThat(first.getContent()).hasSize(1);
+        assertThat(first.hasNext()).isTrue();
+        Assertions.assertThat(last.getContent()).hasSize(1);
+        assertThat(last.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve buscar emprestimos pelo isbn ou customer a partir de um cursor ordenado por data e id")
+    public void findNextByBookISBNOrCustomerTest(){
+        Book book = createNewBook();
+        entityManager.persist(book);
+
+        Loan oldest = Loan.builder().book(book).customer("Camila").loanDate(LocalDate.now().minusDays(2)).returned(true).build();
+        Loan middle = Loan.builder().book(book).customer("Camila").loanDate(LocalDate.now().minusDays(1)).returned(true).build();
+        Loan newest = Loan.builder().book(book).customer("Camila").loanDate(LocalDate.now()).build();
+        entityManager.persist(newest);
+        entityManager.persist(oldest);
+        entityManager.persist(middle);
+
+        List<Loan> first = repository.findFirstByBookISBNOrCustomer("1234", "Camila", PageRequest.of(0, 2));
+        List<Loan> next = repository.findNextByBookISBNOrCustomer("1234", "Camila", middle.getLoanDate(), middle.getId(), PageRequest.of(0, 2));
+
+        Assertions.assertThat(first).containsExactly(oldest, middle);
+        Assertions.assertThat(next).containsExactly(newest);
+    }
+
+    @Test
+    @DisplayName("Deve buscar emprestimos e livros com a mesma quantidade de consultas para qualquer tamanho de pagina")
+    public void findBookByISBNOrCustomerStatementCountTest() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            Book book = Book.builder().title("Livro " + i).isbn("isbn-" + i).author("Jana").build();
+            entityManager.persist(book);
+            entityManager.persist(Loan.builder().book(book).customer("Camila").loanDate(LocalDate.now()).build());
+        }
+        entityManager.flush();
+
+        for (int size : new int[]{ 2, 5 }) {
+            entityManager.clear();
+            List<Page<Loan>> result = new ArrayList<>();
+
+            List<String> statements = SqlRecorder.record(() -> {
+                result.add(repository.findByBookISBNOrCustomer(null, "Camila", PageRequest.of(0, size)));
+                result.get(0).getContent().forEach(loan -> loan.getBook().getTitle());
+            });
+
+            Assertions.assertThat(result.get(0).getContent()).hasSize(size);
+            assertThat(result.get(0).getTotalElements()).isEqualTo(10);
+            Assertions.assertThat(statements).hasSize(2);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve buscar os emprestimos de um livro junto com o livro")
+    public void findByBookStatementCountTest() throws Exception {
+        Book book = createNewBook();
+        entityManager.persist(book);
+        for (int i = 0; i < 6; i++) {
+            entityManager.persist(Loan.builder().book(book).customer("Camila").loanDate(LocalDate.now()).returned(true).build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        List<Page<Loan>> result = new ArrayList<>();
+
+        List<String> statements = SqlRecorder.record(() -> {
+            result.add(repository.findByBook(book, PageRequest.of(0, 5)));
+            result.get(0).getContent().forEach(loan -> loan.getBook().getTitle());
+        });
+
+        Assertions.assertThat(result.get(0).getContent()).hasSize(5);
+        Assertions.assertThat(statements).hasSize(2);
+    }
+
     @Test
     @DisplayName("Deve obter emprestimos cujo a data for menor ou igual a tres dias atreas e nao retornados")
     public void findByLoanDateLessThanNotReturnedTest(){
@@ -106,7 +246,74 @@ public class LoanRepositoryTest {
 
     }
 
+    @Test
+    @DisplayName("Deve percorrer os emprestimos filtrados, ou todos sem filtro, ordenados por id")
+    public void streamByBookISBNOrCustomerTest(){
+        Book book = createNewBook();
+        Book other = Book.builder().title("Outro Livro").isbn("5678").author("Jana").build();
+        entityManager.persist(book);
+        entityManager.persist(other);
+        Loan first = entityManager.persist(Loan.builder().book(book).customer("Camila").loanDate(LocalDate.now()).returned(true).build());
+        Loan second = entityManager.persist(Loan.builder().book(other).customer("Artur").loanDate(LocalDate.now()).build());
+        Loan third = entityManager.persist(Loan.builder().book(book).customer("Jana").loanDate(LocalDate.now()).build());
+
+        List<Loan> byIsbn;
+        try (Stream<Loan> loans = repository.streamByBookISBNOrCustomer("1234", null)) {
+            byIsbn = loans.collect(Collectors.toList());
+        }
+        // detaching the loans already read must not disturb the open scroll
+        List<Loan> all;
+        try (Stream<Loan> loans = repository.streamByBookISBNOrCustomer(null, null)) {
+            all = loans.peek(loan -> entityManager.clear()).collect(Collectors.toList());
+        }
+
+        Assertions.assertThat(byIsbn).containsExactly(first, third);
+        Assertions.assertThat(all).containsExactly(first, second, third);
+        Assertions.assertThat(all.get(2).getBook().getTitle()).isEqualTo("Meu Livro");
+    }
 
+    @Test
+    @DisplayName("Deve buscar os emprestimos atrasados ordenados por email e id a partir da chave informada")
+    public void findLateLoansAfterTest(){
+        LocalDate late = LocalDate.now().minusDays(5);
+        Loan[] loans = new Loan[4];
+        String[] emails = { "jana@email.com", "artur@email.com", "jana@email.com", "camila@email.com" };
+        for (int i = 0; i < loans.length; i++) {
+            Book book = entityManager.persist(Book.builder().title("Livro " + i).isbn("isbn-" + i).author("Jana").build());
+            loans[i] = entityManager.persist(Loan.builder().book(book).customer("Cliente " + i).customerEmail(emails[i]).loanDate(late).build());
+        }
+        Book book = entityManager.persist(Book.builder().title("Devolvido").isbn("isbn-returned").author("Jana").build());
+        entityManager.persist(Loan.builder().book(book).customer("Artur").customerEmail("artur@email.com").loanDate(late).returned(true).build());
+        Book recent = entityManager.persist(Book.builder().title("Recente").isbn("isbn-recent").author("Jana").build());
+        entityManager.persist(Loan.builder().book(recent).customer("Artur").customerEmail("artur@email.com").loanDate(LocalDate.now()).build());
+
+        List<LateLoan> firstChunk = repository.findLateLoansAfter(LocalDate.now().minusDays(4), "", 0L, 0, 1, PageRequest.of(0, 3));
+        LateLoan last = firstChunk.get(2);
+        List<LateLoan> nextChunk = repository.findLateLoansAfter(LocalDate.now().minusDays(4), last.getCustomerEmail(), last.getId(), 0, 1, PageRequest.of(0, 3));
+
+        Assertions.assertThat(firstChunk).extracting(LateLoan::getId).containsExactly(loans[1].getId(), loans[3].getId(), loans[0].getId());
+        Assertions.assertThat(firstChunk.get(0).getBookTitle()).isEqualTo("Livro 1");
+        Assertions.assertThat(firstChunk.get(0).getCustomer()).isEqualTo("Cliente 1");
+        Assertions.assertThat(nextChunk).extracting(LateLoan::getId).containsExactly(loans[2].getId());
+    }
 
-
+    @Test
+    @DisplayName("Deve ler os emprestimos pelos indices, sem percorrer a tabela")
+    public void indexedQueriesPlanTest() throws Exception {
+        Book book = entityManager.persistFlushFind(createNewBook());
+        LocalDate today = LocalDate.now();
+
+        List<String> statements = SqlRecorder.record(() -> {
+            repository.existsByBookAndNotReturned(book);
+            repository.findByBook(book, PageRequest.of(0, 5));
+            repository.findByLoanDateLessThanAndNotReturned(today);
+            repository.findLateLoansAfter(today, "", 0L, 0, 1, PageRequest.of(0, 3));
+            repository.countLoansByBook(Arrays.asList(book.getId(), book.getId() + 1));
+            repository.markReturned(1L);
+        });
+
+        Assertions.assertThat(statements).hasSize(6);
+        QueryPlans.assertNoTableScan(dataSource, statements);
+        QueryPlans.assertUsesIndex(dataSource, statements.get(3), "ix_loan_customer_email_id");
+    }
 }
@@ -0,0 +1,150 @@
+package com.paulina.libraryapi.model.repository;
+
+import com.paulina.libraryapi.model.entity.Notification;
+import com.paulina.libraryapi.model.entity.NotificationStatus;
+import com.paulina.libraryapi.model.respository.NotificationRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class NotificationRepositoryTest {
+
+    static final LocalDate TODAY = LocalDate.of(2022, 4, 20);
+
+    @Autowired
+    NotificationRepository repository;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Deve obter o ultimo email enfileirado no dia")
+    public void findLastEmailTest(){
+        entityManager.persist(pending("jana@email.com", TODAY));
+        entityManager.persist(pending("artur@email.com", TODAY));
+        entityManager.persist(pending("zeca@email.com", TODAY.minusDays(1)));
+
+        assertThat(repository.findLastEmail(TODAY, 0, 1)).isEqualTo("jana@email.com");
+        assertThat(repository.findLastEmail(TODAY.plusDays(1), 0, 1)).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve buscar as notificacoes pendentes de qualquer dia a partir do id informado")
+    public void findNextByStatusTest(){
+        Notification first = entityManager.persist(pending("artur@email.com", TODAY));
+        Notification sent = pending("camila@email.com", TODAY);
+        sent.setStatus(NotificationStatus.SENT);
+        entityManager.persist(sent);
+        Notification second = entityManager.persist(pending("jana@email.com", TODAY));
+        Notification earlier = entityManager.persist(pending("zeca@email.com", TODAY.minusDays(1)));
+
+        List<Notification> firstChunk = repository.findNextByStatus(NotificationStatus.PENDING, 0L, 0, 1, PageRequest.of(0, 1));
+        List<Notification> nextChunk = repository.findNextByStatus(NotificationStatus.PENDING, first.getId(), 0, 1, PageRequest.of(0, 2));
+
+        assertThat(firstChunk).containsExactly(first);
+        assertThat(nextChunk).containsExactly(second, earlier);
+    }
+
+    @Test
+    @DisplayName("Deve obter os emails que ainda tem notificacao pendente")
+    public void findEmailsByStatusTest(){
+        entityManager.persist(pending("artur@email.com", TODAY.minusDays(1)));
+        Notification sent = pending("camila@email.com", TODAY.minusDays(1));
+        sent.setStatus(NotificationStatus.SENT);
+        entityManager.persist(sent);
+
+        Set<String> emails = repository.findEmailsByStatus(NotificationStatus.PENDING,
+                Arrays.asList("artur@email.com", "camila@email.com", "jana@email.com"));
+
+        assertThat(emails).containsExactly("artur@email.com");
+    }
+
+    @Test
+    @DisplayName("Deve separar as notificacoes do dia em particoes pelo email do cliente")
+    public void findNextByStatusPartitionTest(){
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            emails.add("cliente" + i + "@email.com");
+            entityManager.persist(pending(emails.get(i), TODAY));
+        }
+
+        List<String> partitioned = new ArrayList<>();
+        for (int partition = 0; partition < 3; partition++) {
+            List<Notification> chunk = repository.findNextByStatus(NotificationStatus.PENDING, 0L, partition, 3, PageRequest.of(0, 20));
+            String last = chunk.stream().map(Notification::getCustomerEmail).max(String::compareTo).orElse(null);
+            assertThat(repository.findLastEmail(TODAY, partition, 3)).isEqualTo(last);
+            chunk.forEach(notification -> partitioned.add(notification.getCustomerEmail()));
+        }
+
+        assertThat(partitioned).containsExactlyInAnyOrderElementsOf(emails);
+    }
+
+    @Test
+    @DisplayName("Deve marcar as notificacoes como enviadas")
+    public void markSentTest(){
+        Notification notification = entityManager.persist(pending("artur@email.com", TODAY));
+        LocalDateTime sentAt = LocalDateTime.of(2022, 4, 20, 0, 1);
+
+        int updated = repository.markSent(Collections.singletonList(notification.getId()), NotificationStatus.SENT, sentAt);
+        entityManager.clear();
+
+        Notification found = entityManager.find(Notification.class, notification.getId());
+        assertThat(updated).isEqualTo(1);
+        assertThat(found.getStatus()).isEqualTo(NotificationStatus.SENT);
+        assertThat(found.getSentAt()).isEqualTo(sentAt);
+    }
+
+    @Test
+    @DisplayName("Deve contar as tentativas e desistir ao atingir o maximo")
+    public void markAttemptFailedTest(){
+        Notification first = entityManager.persist(pending("artur@email.com", TODAY));
+        Notification last = pending("camila@email.com", TODAY);
+        last.setAttempts(2);
+        entityManager.persist(last);
+
+        repository.markAttemptFailed(Arrays.asList(first.getId(), last.getId()), 3, NotificationStatus.FAILED);
+        entityManager.clear();
+
+        Notification firstFound = entityManager.find(Notification.class, first.getId());
+        Notification lastFound = entityManager.find(Notification.class, last.getId());
+        assertThat(firstFound.getAttempts()).isEqualTo(1);
+        assertThat(firstFound.getStatus()).isEqualTo(NotificationStatus.PENDING);
+        assertThat(lastFound.getAttempts()).isEqualTo(3);
+        assertThat(lastFound.getStatus()).isEqualTo(NotificationStatus.FAILED);
+    }
+
+    @Test
+    @DisplayName("Nao deve enfileirar o mesmo cliente duas vezes no mesmo dia")
+    public void uniqueEmailPerDayTest(){
+        entityManager.persist(pending("artur@email.com", TODAY));
+
+        Throwable exception = catchThrowable(() -> repository.saveAndFlush(pending("artur@email.com", TODAY)));
+
+        assertThat(exception).isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    private Notification pending(String email, LocalDate date) {
+        return Notification.builder().customerEmail(email).notificationDate(date).status(NotificationStatus.PENDING).build();
+    }
+}
@@ -0,0 +1,63 @@
+package com.paulina.libraryapi.model.repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * H2 {@code EXPLAIN} plans of recorded statements. H2 picks indexes from the shape of a query, not from the values of
+ * its parameters, so they are bound to null and the tables may be empty.
+ */
+public final class QueryPlans {
+
+    private static final String TABLE_SCAN = ".tableScan";
+
+    private QueryPlans() {
+    }
+
+    public static String explain(DataSource dataSource, String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+            int parameters = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parameters; i++) {
+                statement.setNull(i, Types.NULL);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1));
+                }
+            }
+            return plan.toString();
+        }
+    }
+
+    /**
+     * Fails when any of the statements reads a table by scanning it instead of through an index.
+     */
+    public static void assertNoTableScan(DataSource dataSource, List<String> statements) throws SQLException {
+        for (String sql : statements) {
+            String plan = explain(dataSource, sql);
+            if (plan.contains(TABLE_SCAN)) {
+                fail("Table scan in the plan of%n  %s%n%s", sql, plan);
+            }
+        }
+    }
+
+    /**
+     * Fails unless the plan of the statement reads through the index, for queries relying on its order.
+     */
+    public static void assertUsesIndex(DataSource dataSource, String sql, String index) throws SQLException {
+        String plan = explain(dataSource, sql);
+        if (!plan.toUpperCase(Locale.ROOT).contains("." + index.toUpperCase(Locale.ROOT) + ":")) {
+            fail("%s not used by%n  %s%n%s", index, sql, plan);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.paulina.libraryapi.model.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the SQL statements Hibernate prepares on the current thread, to assert on the cost of a repository call or
+ * of a MockMvc request rather than only on its result. Registered by adding {@link #PROPERTY} to the test properties.
+ * Statements of other threads, such as scheduled jobs, and of {@code JdbcTemplate} are not recorded.
+ */
+public class SqlRecorder implements StatementInspector {
+
+    public static final String PROPERTY =
+            "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.paulina.libraryapi.model.repository.SqlRecorder";
+
+    private static final ThreadLocal<List<String>> STATEMENTS = new ThreadLocal<>();
+
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        List<String> statements = STATEMENTS.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+
+    /**
+     * @return the statements prepared by the action, in order
+     */
+    public static List<String> record(Action action) throws Exception {
+        List<String> statements = new ArrayList<>();
+        STATEMENTS.set(statements);
+        try {
+            action.run();
+        } finally {
+            STATEMENTS.remove();
+        }
+        return statements;
+    }
+}
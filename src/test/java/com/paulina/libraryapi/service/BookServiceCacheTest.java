@@ -0,0 +1,177 @@
+package com.paulina.libraryapi.service;
+
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.projection.BookVersion;
+import com.paulina.libraryapi.model.respository.BookRepository;
+import com.paulina.libraryapi.service.imp.BookServiceImp;
+import com.paulina.libraryapi.service.search.BookSearchIndex;
+import com.paulina.libraryapi.service.search.BookSuggester;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@ContextConfiguration(classes = BookServiceCacheTest.CacheConfig.class)
+public class BookServiceCacheTest {
+
+    @Configuration
+    @EnableCaching
+    @Import(BookServiceImp.class)
+    static class CacheConfig {
+        @Bean
+        public CacheManager cacheManager() {
+            return new CaffeineCacheManager(BookServiceImp.BOOKS_CACHE, BookServiceImp.BOOKS_BY_ISBN_CACHE,
+                    BookServiceImp.BOOK_VERSIONS_CACHE);
+        }
+    }
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @MockBean
+    BookRepository repository;
+
+    @MockBean
+    EntityManager entityManager;
+
+    @MockBean
+    BookSearchIndex searchIndex;
+
+    @MockBean
+    BookSuggester suggester;
+
+    @BeforeEach
+    public void setUp(){
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    @DisplayName("Deve obter o livro por id do cache a partir da segunda consulta")
+    public void getByIdCachedTest(){
+        // cenario
+        Book book = Book.builder().id(1L).isbn("123").title("As Aventuras").author("Artur").build();
+        Mockito.when(repository.findById(1L)).thenReturn(Optional.of(book));
+
+        // execucao
+        Optional<Book> first = service.getById(1L);
+        Optional<Book> second = service.getById(1L);
+
+        // verificacao
+        assertThat(first).contains(book);
+        assertThat(second).contains(book);
+        Mockito.verify(repository, Mockito.times(1)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("Deve obter o livro por isbn do cache e nao guardar livros inexistentes")
+    public void getBookByIsbnCachedTest(){
+        // cenario
+        Book book = Book.builder().id(1L).isbn("123").build();
+        Mockito.when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+        Mockito.when(repository.findByIsbn("999")).thenReturn(Optional.empty());
+
+        // execucao
+        service.getBookByIsbn("123");
+        service.getBookByIsbn("123");
+        service.getBookByIsbn("999");
+        service.getBookByIsbn("999");
+
+        // verificacao
+        Mockito.verify(repository, Mockito.times(1)).findByIsbn("123");
+        Mockito.verify(repository, Mockito.times(2)).findByIsbn("999");
+    }
+
+    @Test
+    @DisplayName("Deve invalidar o cache ao atualizar e deletar um livro")
+    public void evictOnUpdateAndDeleteTest(){
+        // cenario
+        Book book = Book.builder().id(1L).isbn("123").build();
+        Mockito.when(repository.findById(1L)).thenReturn(Optional.of(book));
+        Mockito.when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+        Mockito.when(repository.save(book)).thenReturn(book);
+
+        // execucao
+        service.getById(1L);
+        service.getBookByIsbn("123");
+        service.update(book);
+        service.getById(1L);
+        service.getBookByIsbn("123");
+        service.delete(book);
+        service.getById(1L);
+
+        // verificacao
+        Mockito.verify(repository, Mockito.times(3)).findById(1L);
+        Mockito.verify(repository, Mockito.times(2)).findByIsbn("123");
+    }
+
+    @Test
+    @DisplayName("Deve carregar o livro a atualizar fora do cache e manter o livro em cache se a atualizacao falhar")
+    public void getForUpdateUncachedTest(){
+        // cenario
+        Book cached = Book.builder().id(1L).isbn("123").title("As Aventuras").author("Artur").version(0L).build();
+        Book stored = Book.builder().id(1L).isbn("123").title("As Aventuras").author("Artur").version(0L).build();
+        Mockito.when(repository.findById(1L)).thenReturn(Optional.of(cached), Optional.of(stored));
+        Mockito.when(repository.save(stored)).thenThrow(new ObjectOptimisticLockingFailureException(Book.class, 1L));
+        service.getById(1L);
+
+        // execucao
+        Book updating = service.getForUpdate(1L).get();
+        updating.setTitle("Outro titulo");
+        Throwable exception = catchThrowable(() -> service.update(updating));
+
+        // verificacao
+        assertThat(exception).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(updating).isNotSameAs(cached);
+        assertThat(service.getById(1L)).containsSame(cached);
+        assertThat(cached.getTitle()).isEqualTo("As Aventuras");
+        Mockito.verify(repository, Mockito.times(2)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("Deve obter a versao do livro do cache ate o livro ser atualizado")
+    public void getVersionCachedTest(){
+        // cenario
+        Book book = Book.builder().id(1L).isbn("123").build();
+        Instant modified = Instant.parse("2026-03-01T10:15:30Z");
+        Mockito.when(repository.findVersionById(1L)).thenReturn(Optional.of(new BookVersion(0L, modified)),
+                Optional.of(new BookVersion(1L, modified.plusSeconds(60))));
+        Mockito.when(repository.save(book)).thenReturn(book);
+
+        // execucao
+        Optional<BookVersion> first = service.getVersion(1L);
+        Optional<BookVersion> cached = service.getVersion(1L);
+        service.update(book);
+        Optional<BookVersion> updated = service.getVersion(1L);
+
+        // verificacao
+        assertThat(first).isEqualTo(cached);
+        assertThat(updated.map(BookVersion::getVersion)).contains(1L);
+        Mockito.verify(repository, Mockito.times(2)).findVersionById(1L);
+        Mockito.verify(repository, Mockito.never()).findById(1L);
+    }
+}
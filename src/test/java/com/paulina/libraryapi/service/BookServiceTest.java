@@ -2,9 +2,12 @@ package com.paulina.libraryapi.service;
 
 import com.paulina.libraryapi.api.exception.BusinessException;
 import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.projection.Suggestion;
 import com.paulina.libraryapi.model.entity.Loan;
 import com.paulina.libraryapi.model.respository.BookRepository;
 import com.paulina.libraryapi.service.imp.BookServiceImp;
+import com.paulina.libraryapi.service.search.BookSearchIndex;
+import com.paulina.libraryapi.service.search.BookSuggester;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -19,11 +22,14 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.persistence.EntityManager;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.*;
 import org.junit.jupiter.api.Assertions;
@@ -37,9 +43,18 @@ public class BookServiceTest {
     @MockBean
     BookRepository repository;
 
+    @MockBean
+    EntityManager entityManager;
+
+    @MockBean
+    BookSearchIndex searchIndex;
+
+    @MockBean
+    BookSuggester suggester;
+
     @BeforeEach
     public void setUp(){
-        this.service = new BookServiceImp(repository);
+        this.service = new BookServiceImp(repository, entityManager, searchIndex, suggester);
     }
 
     @Test
@@ -60,6 +75,8 @@ public class BookServiceTest {
         assertThat(savedBook.getIsbn()).isEqualTo("1235543");
         assertThat(savedBook.getTitle()).isEqualTo("Amanhã você vai entender");
         assertThat(savedBook.getAuthor()).isEqualTo("Camila");
+        Mockito.verify(searchIndex).index(savedBook);
+        Mockito.verify(suggester).index(savedBook);
     }
 
     @Test
@@ -128,6 +145,8 @@ public class BookServiceTest {
 
         //verificacao
         Mockito.verify(repository, Mockito.times(1)).delete(book);
+        Mockito.verify(searchIndex).remove(11L);
+        Mockito.verify(suggester).remove(11L);
     }
 
     @Test
@@ -160,6 +179,8 @@ public class BookServiceTest {
         assertThat(updatedBook).isNotNull();
         assertThat(updatedBook.getTitle()).isEqualTo(updateBook.getTitle());
         assertThat(updatedBook.getAuthor()).isEqualTo(updateBook.getAuthor());
+        Mockito.verify(searchIndex).index(updateBook);
+        Mockito.verify(suggester).index(updateBook);
         Mockito.verify(repository, Mockito.times(1)).save(book);
     }
 
@@ -212,6 +233,56 @@ public class BookServiceTest {
         Mockito.verify(repository, Mockito.times(1)).findByIsbn(isbn);
     }
 
+    @Test
+    @DisplayName("Deve importar apenas os livros com isbn ainda nao cadastrado")
+    public void importBooksTest(){
+        // cenario
+        Book registered = Book.builder().isbn("1").title("As Aventuras").author("Artur").build();
+        Book newBook = Book.builder().isbn("2").title("Outro Livro").author("Camila").build();
+        Mockito.when(repository.findIsbnsIn(Arrays.asList("1", "2"))).thenReturn(Collections.singleton("1"));
+
+        // execucao
+        Set<String> skipped = service.importBooks(Arrays.asList(registered, newBook));
+
+        // verificacao
+        assertThat(skipped).containsExactly("1");
+        Mockito.verify(repository).saveAll(Collections.singletonList(newBook));
+        Mockito.verify(searchIndex).index(Mockito.<List<Book>>any());
+        Mockito.verify(suggester).index(Mockito.<List<Book>>any());
+        Mockito.verify(repository).flush();
+        Mockito.verify(entityManager).clear();
+    }
+
+    @Test
+    @DisplayName("Deve buscar os livros no indice de busca")
+    public void searchTest(){
+        // cenario
+        List<Book> found = Collections.singletonList(createBook());
+        Mockito.when(searchIndex.search("amanha", 10)).thenReturn(found);
+
+        // execucao
+        List<Book> result = service.search("amanha", 10);
+
+        // verificacao
+        assertThat(result).isEqualTo(found);
+        Mockito.verifyNoInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("Deve sugerir titulos e autores pelo prefixo")
+    public void suggestTest(){
+        // cenario
+        List<Suggestion> found = Collections.singletonList(new Suggestion("Amanhã você vai entender", Suggestion.TITLE, 3));
+        Mockito.when(suggester.suggest("ama", 10)).thenReturn(found);
+
+        // execucao
+        List<Suggestion> result = service.suggest("ama", 10);
+
+        // verificacao
+        assertThat(result).isEqualTo(found);
+        Mockito.verifyNoInteractions(repository);
+    }
+
     private Book createBook() {
         return Book.builder().author("Camila").isbn("1235543").title("Amanhã você vai entender").build();
     }
@@ -0,0 +1,170 @@
+package com.paulina.libraryapi.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.user.GreenMailUser;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.paulina.libraryapi.config.MailDispatchProperties;
+import com.paulina.libraryapi.service.imp.EmailServiceImp;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.internet.MimeMessage;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EmailServiceTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    MailDispatchProperties properties;
+
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp(){
+        properties = new MailDispatchProperties();
+        properties.setRecipientsPerMessage(2);
+        properties.setMessagesPerConnection(2);
+        properties.setConnections(2);
+        properties.setQueueCapacity(1);
+        properties.setBackoff(Duration.ofMillis(1));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @DisplayName("Deve enviar os emails em lotes de destinatarios pelo servidor smtp")
+    public void sendMailsTest() throws Exception {
+        // cenario
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost(ServerSetupTest.SMTP.getBindAddress());
+        sender.setPort(ServerSetupTest.SMTP.getPort());
+        EmailServiceImp service = new EmailServiceImp("mail@library-api.com", sender, properties, meterRegistry);
+        List<String> mails = Arrays.asList("a@email.com", "b@email.com", "c@email.com", "d@email.com",
+                "e@email.com", "f@email.com", "g@email.com");
+
+        // execucao
+        service.sendMails("Atrasado", mails);
+        service.shutdown();
+
+        // verificacao
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).hasSize(7);
+        for( String mail : mails ){
+            GreenMailUser user = greenMail.getUserManager().getUserByEmail(mail);
+            assertThat(greenMail.getManagers().getImapHostManager().getInbox(user).getMessageCount()).isEqualTo(1);
+        }
+        // every customer gets a copy, without the address of any other customer
+        for( MimeMessage message : received ){
+            assertThat(message.getAllRecipients()).isNull();
+            assertThat(Collections.list(message.getAllHeaderLines()))
+                    .noneMatch(header -> mails.stream().anyMatch(header::contains));
+        }
+        assertThat(received[0].getSubject()).isEqualTo("Livro com emprestimo atrasada");
+        assertThat(counter("library.mail.messages", "sent")).isEqualTo(4);
+        assertThat(meterRegistry.get("library.mail.recipients").counter().count()).isEqualTo(7);
+        assertThat(meterRegistry.get("library.mail.connection").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("library.mail.queue").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve reenviar apenas as mensagens recusadas pelo servidor")
+    public void retryFailedMessagesTest() throws Exception {
+        // cenario
+        ScriptedMailSender sender = new ScriptedMailSender(messages -> {
+            throw new MailSendException(Collections.singletonMap(messages[1], new Exception("451 try again")));
+        }, messages -> { });
+        EmailServiceImp service = new EmailServiceImp("mail@library-api.com", sender, properties, meterRegistry);
+
+        // execucao
+        service.sendMails("Atrasado", Arrays.asList("a@email.com", "b@email.com", "c@email.com"));
+        service.shutdown();
+
+        // verificacao
+        assertThat(sender.connections).hasSize(2);
+        assertThat(sender.connections.get(0)).hasSize(2);
+        assertThat(sender.connections.get(1)).hasSize(1);
+        assertThat(sender.connections.get(1)[0].getBcc()).containsExactly("c@email.com");
+        assertThat(counter("library.mail.messages", "sent")).isEqualTo(2);
+        assertThat(meterRegistry.get("library.mail.retries").counter().count()).isEqualTo(1);
+        assertThat(counter("library.mail.messages", "failed")).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve desistir depois do numero maximo de tentativas")
+    public void giveUpAfterMaxAttemptsTest() throws Exception {
+        // cenario
+        ScriptedMailSender sender = new ScriptedMailSender(messages -> {
+            throw new MailSendException("connection refused");
+        });
+        EmailServiceImp service = new EmailServiceImp("mail@library-api.com", sender, properties, meterRegistry);
+
+        // execucao
+        List<String> unreached = service.sendMailsAsync("Atrasado", Arrays.asList("a@email.com", "b@email.com")).get();
+        service.shutdown();
+
+        // verificacao
+        assertThat(unreached).containsExactly("a@email.com", "b@email.com");
+        assertThat(sender.connections).hasSize(3);
+        assertThat(counter("library.mail.messages", "failed")).isEqualTo(1);
+        assertThat(meterRegistry.get("library.mail.retries").counter().count()).isEqualTo(2);
+        assertThat(service.sendMailsAsync("Atrasado", Collections.singletonList("c@email.com")).get()).containsExactly("c@email.com");
+    }
+
+    @Test
+    @DisplayName("Nao deve reenviar quando a autenticacao falhar")
+    public void noRetryOnAuthenticationFailureTest() throws Exception {
+        // cenario
+        ScriptedMailSender sender = new ScriptedMailSender(messages -> {
+            throw new MailAuthenticationException("535 bad credentials");
+        });
+        EmailServiceImp service = new EmailServiceImp("mail@library-api.com", sender, properties, meterRegistry);
+
+        // execucao
+        service.sendMails("Atrasado", Collections.singletonList("a@email.com"));
+        service.shutdown();
+
+        // verificacao
+        assertThat(sender.connections).hasSize(1);
+        assertThat(counter("library.mail.messages", "failed")).isEqualTo(1);
+        assertThat(meterRegistry.get("library.mail.retries").counter().count()).isZero();
+    }
+
+    private double counter(String name, String result) {
+        return meterRegistry.get(name).tag("result", result).counter().count();
+    }
+
+    /**
+     * Records every connection and answers each one with the next step, repeating the last.
+     */
+    static class ScriptedMailSender extends JavaMailSenderImpl {
+
+        final List<SimpleMailMessage[]> connections = new CopyOnWriteArrayList<>();
+        private final List<Consumer<SimpleMailMessage[]>> steps;
+
+        @SafeVarargs
+        ScriptedMailSender(Consumer<SimpleMailMessage[]>... steps) {
+            this.steps = Arrays.asList(steps);
+        }
+
+        @Override
+        public void send(SimpleMailMessage... simpleMessages) {
+            connections.add(simpleMessages);
+            steps.get(Math.min(connections.size(), steps.size()) - 1).accept(simpleMessages);
+        }
+    }
+}
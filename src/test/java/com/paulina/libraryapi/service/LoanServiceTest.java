@@ -4,8 +4,11 @@ import com.paulina.libraryapi.api.dto.LoanFilterDTO;
 import com.paulina.libraryapi.api.exception.BusinessException;
 import com.paulina.libraryapi.model.entity.Book;
 import com.paulina.libraryapi.model.entity.Loan;
+import com.paulina.libraryapi.model.projection.LateLoan;
 import com.paulina.libraryapi.model.respository.LoanRepository;
 import com.paulina.libraryapi.service.imp.LoanServiceImp;
+import com.paulina.libraryapi.service.search.BookSuggester;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -14,17 +17,23 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.persistence.EntityManager;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.catchThrowable;
@@ -40,9 +49,18 @@ public class LoanServiceTest {
     @MockBean
     private LoanRepository reposotory;
 
+    @MockBean
+    private EntityManager entityManager;
+
+    @MockBean
+    private BookSuggester suggester;
+
+    private SimpleMeterRegistry meterRegistry;
+
     @BeforeEach
     public void setUp(){
-        this.service = new LoanServiceImp(reposotory);
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.service = new LoanServiceImp(reposotory, entityManager, suggester, meterRegistry);
 
     }
 
@@ -60,8 +78,7 @@ public class LoanServiceTest {
 
         Loan saveLoan = Loan.builder().id(1l).loanDate(LocalDate.now()).customer("Camila").book(book).build();
 
-        Mockito.when(reposotory.existsByBookAndNotReturned(book)).thenReturn(false);
-        Mockito.when(reposotory.save(loan)).thenReturn(saveLoan);
+        Mockito.when(reposotory.saveAndFlush(loan)).thenReturn(saveLoan);
 
         Loan savingLoan = service.save(loan);
 
@@ -69,19 +86,37 @@ public class LoanServiceTest {
         assertThat(loan.getBook().getId()).isEqualTo(saveLoan.getBook().getId());
         assertThat(loan.getCustomer()).isEqualTo(saveLoan.getCustomer());
         assertThat(loan.getLoanDate()).isEqualTo(saveLoan.getLoanDate());
+        Mockito.verify(suggester).loaned(1L);
+        assertThat(meterRegistry.get("library.loans.created").counter().count()).isEqualTo(1);
     }
 
     @Test
     @DisplayName("Deve lancar erro de negocio ao salvar um emprestimo com livro emprestado")
     public void loanedBookSaveTest(){
         Loan loan = createLoan();
-        Mockito.when(reposotory.existsByBookAndNotReturned(loan.getBook())).thenReturn(true);
+        Mockito.when(reposotory.saveAndFlush(loan)).thenThrow(new DataIntegrityViolationException(
+                "could not execute statement", new RuntimeException("Unique index or primary key violation: \"PUBLIC.UX_LOAN_OPEN_BOOK_INDEX_2 ON PUBLIC.LOAN(OPEN_BOOK_ID) VALUES 1\"")));
 
         Throwable exception = catchThrowable(() -> service.save(loan));
 
         assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Book already loaned");
+        Mockito.verifyNoInteractions(suggester);
 
-        Mockito.verify(reposotory, Mockito.never()).save(loan);
+        Mockito.verify(reposotory, Mockito.never()).existsByBookAndNotReturned(loan.getBook());
+        assertThat(meterRegistry.get("library.loans.rejected").tag("reason", "already-loaned").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("library.loans.created").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve propagar outras violacoes de integridade ao salvar um emprestimo")
+    public void otherIntegrityViolationSaveTest(){
+        Loan loan = createLoan();
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("FK_LOAN_BOOK");
+        Mockito.when(reposotory.saveAndFlush(loan)).thenThrow(violation);
+
+        Throwable exception = catchThrowable(() -> service.save(loan));
+
+        assertThat(exception).isSameAs(violation);
 
     }
 
@@ -115,15 +150,58 @@ public class LoanServiceTest {
 
         loan.setReturned(true);
 
-        when(reposotory.save(loan)).thenReturn(loan);
+        when(reposotory.saveAndFlush(loan)).thenReturn(loan);
 
         Loan updatedLoan = service.update(loan);
 
         assertThat(updatedLoan.getReturned()).isTrue();
-        verify(reposotory).save(loan);
+        verify(reposotory).saveAndFlush(loan);
 
     }
 
+    @Test
+    @DisplayName("Deve lancar erro de negocio ao reabrir um emprestimo com livro emprestado novamente")
+    public void reopenLoanedBookTest(){
+        Loan loan = createLoan();
+        loan.setId(1l);
+        loan.setReturned(false);
+        Mockito.when(reposotory.saveAndFlush(loan)).thenThrow(new DataIntegrityViolationException(
+                "could not execute statement", new RuntimeException("Unique index or primary key violation: \"PUBLIC.UX_LOAN_OPEN_BOOK_INDEX_2 ON PUBLIC.LOAN(OPEN_BOOK_ID) VALUES 1\"")));
+
+        Throwable exception = catchThrowable(() -> service.update(loan));
+
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Book already loaned");
+        assertThat(meterRegistry.get("library.loans.rejected").tag("reason", "already-loaned").counter().count()).isEqualTo(1);
+    }
+
+
+    @Test
+    @DisplayName("Deve devolver um emprestimo com um unico update, sem carrega-lo")
+    public void returnLoanTest(){
+        when(reposotory.markReturned(1L)).thenReturn(1);
+
+        service.returnLoan(1L);
+
+        verify(reposotory).markReturned(1L);
+        verify(reposotory, Mockito.never()).findById(Mockito.anyLong());
+        verify(reposotory, Mockito.never()).existsById(Mockito.anyLong());
+        assertThat(meterRegistry.get("library.loans.returned").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve distinguir um emprestimo inexistente de um ja devolvido quando nada for atualizado")
+    public void returnLoanNotUpdatedTest(){
+        when(reposotory.markReturned(Mockito.anyLong())).thenReturn(0);
+        when(reposotory.existsById(1L)).thenReturn(true);
+        when(reposotory.existsById(2L)).thenReturn(false);
+
+        Throwable returned = catchThrowable(() -> service.returnLoan(1L));
+        Throwable missing = catchThrowable(() -> service.returnLoan(2L));
+
+        assertThat(returned).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(missing).isInstanceOf(EmptyResultDataAccessException.class);
+        assertThat(meterRegistry.get("library.loans.returned").counter().count()).isZero();
+    }
 
     @Test
     @DisplayName("Deve filtrar emprestimos pelas propriedades")
@@ -161,6 +239,31 @@ public class LoanServiceTest {
                 .build();
     }
 
+    @Test
+    @DisplayName("Deve exportar os emprestimos limpando o contexto de persistencia a cada lote")
+    public void exportLoansTest(){
+        LoanFilterDTO filter = LoanFilterDTO.builder().isbn("123").build();
+        when(reposotory.streamByBookISBNOrCustomer("123", null))
+                .thenReturn(LongStream.rangeClosed(1, 1001).mapToObj(id -> Loan.builder().id(id).build()));
+
+        AtomicLong lastId = new AtomicLong();
+        long count = service.exportLoans(filter, loan -> lastId.set(loan.getId()));
+
+        assertThat(count).isEqualTo(1001L);
+        assertThat(lastId.get()).isEqualTo(1001L);
+        verify(entityManager, Mockito.times(2)).clear();
+    }
 
-
+    @Test
+    @DisplayName("Deve buscar os emprestimos atrasados a partir do ultimo lido")
+    public void getLateLoansTest(){
+        LocalDate lateDate = LocalDate.now().minusDays(4);
+        LateLoan last = new LateLoan(7L, "Camila", "camila@email.com", "Meu Livro");
+        List<LateLoan> next = Arrays.asList(new LateLoan(9L, "Jana", "jana@email.com", "Revista"));
+        when(reposotory.findLateLoansAfter(lateDate, "", 0L, 0, 1, PageRequest.of(0, 10))).thenReturn(Arrays.asList(last));
+        when(reposotory.findLateLoansAfter(lateDate, "camila@email.com", 7L, 0, 1, PageRequest.of(0, 10))).thenReturn(next);
+
+        Assertions.assertThat(service.getLateLoans(null, 10, 0, 1)).containsExactly(last);
+        Assertions.assertThat(service.getLateLoans(last, 10, 0, 1)).isEqualTo(next);
+    }
 }
@@ -0,0 +1,115 @@
+package com.paulina.libraryapi.service;
+
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.entity.Loan;
+import com.paulina.libraryapi.model.entity.Notification;
+import com.paulina.libraryapi.model.entity.NotificationStatus;
+import com.paulina.libraryapi.model.respository.BookRepository;
+import com.paulina.libraryapi.model.respository.LoanRepository;
+import com.paulina.libraryapi.model.respository.NotificationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "application.mail.lateloans.lock-at-least-for=0s")
+public class NotificationOutboxTest {
+
+    @Autowired
+    ScheduleService scheduleService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    NotificationRepository notificationRepository;
+
+    @MockBean
+    EmailService emailService;
+
+    @AfterEach
+    public void tearDown(){
+        notificationRepository.deleteAll();
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Deve reenviar apenas as notificacoes que falharam quando o job rodar de novo no mesmo dia")
+    public void resumeAfterFailedRunTest(){
+        // cenario
+        List<String> emails = Arrays.asList("artur@email.com", "camila@email.com", "jana@email.com");
+        for (int i = 0; i < emails.size(); i++) {
+            Book book = bookRepository.save(Book.builder().title("Livro " + i).author("Jana").isbn("outbox-" + i).build());
+            loanRepository.save(Loan.builder().book(book).customer("Cliente " + i).customerEmail(emails.get(i))
+                    .loanDate(LocalDate.now().minusDays(10)).build());
+        }
+        Mockito.when(emailService.sendMailsAsync(Mockito.anyString(), Mockito.eq(emails)))
+                .thenReturn(CompletableFuture.completedFuture(Collections.singletonList("camila@email.com")));
+        Mockito.when(emailService.sendMailsAsync(Mockito.anyString(), Mockito.eq(Collections.singletonList("camila@email.com"))))
+                .thenReturn(CompletableFuture.completedFuture(Collections.emptyList()));
+
+        // execucao
+        scheduleService.sendMailToLateLoans();
+        long pendingAfterFirstRun = notificationRepository.countByNotificationDateAndStatus(LocalDate.now(), NotificationStatus.PENDING);
+        scheduleService.sendMailToLateLoans();
+        scheduleService.sendMailToLateLoans();
+
+        // verificacao
+        assertThat(pendingAfterFirstRun).isEqualTo(1);
+        assertThat(notificationRepository.count()).isEqualTo(3);
+        assertThat(notificationRepository.countByNotificationDateAndStatus(LocalDate.now(), NotificationStatus.SENT)).isEqualTo(3);
+        Mockito.verify(emailService).sendMailsAsync(Mockito.anyString(), Mockito.eq(emails));
+        Mockito.verify(emailService).sendMailsAsync(Mockito.anyString(), Mockito.eq(Collections.singletonList("camila@email.com")));
+        Mockito.verifyNoMoreInteractions(emailService);
+    }
+
+    @Test
+    @DisplayName("Deve reenviar nas proximas execucoes a notificacao pendente de outro dia ate o maximo de tentativas")
+    public void retryPendingFromEarlierDayTest(){
+        // cenario
+        Book book = bookRepository.save(Book.builder().title("Livro").author("Jana").isbn("outbox-antigo").build());
+        loanRepository.save(Loan.builder().book(book).customer("Camila").customerEmail("camila@email.com")
+                .loanDate(LocalDate.now().minusDays(10)).build());
+        Notification artur = notificationRepository.save(Notification.builder().customerEmail("artur@email.com")
+                .notificationDate(LocalDate.now().minusDays(1)).status(NotificationStatus.PENDING).build());
+        Notification camila = notificationRepository.save(Notification.builder().customerEmail("camila@email.com")
+                .notificationDate(LocalDate.now().minusDays(1)).status(NotificationStatus.PENDING).build());
+        Mockito.when(emailService.sendMailsAsync(Mockito.anyString(), Mockito.anyList()))
+                .thenReturn(CompletableFuture.completedFuture(Collections.singletonList("camila@email.com")));
+
+        // execucao
+        scheduleService.sendMailToLateLoans();
+        scheduleService.sendMailToLateLoans();
+        scheduleService.sendMailToLateLoans();
+
+        // verificacao
+        assertThat(notificationRepository.findById(artur.getId())).hasValueSatisfying(notification ->
+                assertThat(notification.getStatus()).isEqualTo(NotificationStatus.SENT));
+        assertThat(notificationRepository.findById(camila.getId())).hasValueSatisfying(notification -> {
+            assertThat(notification.getStatus()).isEqualTo(NotificationStatus.FAILED);
+            assertThat(notification.getAttempts()).isEqualTo(3);
+        });
+        // the customer still pending from yesterday was not enqueued again today
+        assertThat(notificationRepository.count()).isEqualTo(2);
+        Mockito.verify(emailService).sendMailsAsync(Mockito.anyString(), Mockito.eq(Arrays.asList("artur@email.com", "camila@email.com")));
+        Mockito.verify(emailService, Mockito.times(2)).sendMailsAsync(Mockito.anyString(), Mockito.eq(Collections.singletonList("camila@email.com")));
+        Mockito.verifyNoMoreInteractions(emailService);
+    }
+}
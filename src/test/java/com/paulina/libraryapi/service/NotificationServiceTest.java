@@ -0,0 +1,153 @@
+package com.paulina.libraryapi.service;
+
+import com.paulina.libraryapi.model.entity.Notification;
+import com.paulina.libraryapi.model.entity.NotificationStatus;
+import com.paulina.libraryapi.model.projection.LateLoan;
+import com.paulina.libraryapi.model.respository.NotificationRepository;
+import com.paulina.libraryapi.service.imp.NotificationServiceImp;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class NotificationServiceTest {
+
+    static final LocalDate TODAY = LocalDate.of(2022, 4, 20);
+
+    NotificationService service;
+
+    @MockBean
+    NotificationRepository repository;
+
+    @MockBean
+    LoanService loanService;
+
+    @MockBean
+    EmailService emailService;
+
+    @BeforeEach
+    public void setUp(){
+        this.service = new NotificationServiceImp(repository, loanService, emailService, 2, 2, 3);
+    }
+
+    @Test
+    @DisplayName("Deve enfileirar uma notificacao por cliente lendo os emprestimos atrasados em lotes")
+    @SuppressWarnings("unchecked")
+    public void enqueueLateLoansTest(){
+        // cenario
+        LateLoan first = new LateLoan(3L, "Artur", "artur@email.com", "As Aventuras");
+        LateLoan second = new LateLoan(1L, "Camila", "camila@email.com", "Meu Livro");
+        LateLoan third = new LateLoan(2L, "Camila", "camila@email.com", "Outro Livro");
+        LateLoan fourth = new LateLoan(4L, "Jana", "jana@email.com", "Revista");
+        Mockito.when(loanService.getLateLoans(null, 2, 0, 1)).thenReturn(Arrays.asList(first, second));
+        Mockito.when(loanService.getLateLoans(second, 2, 0, 1)).thenReturn(Arrays.asList(third, fourth));
+        Mockito.when(loanService.getLateLoans(fourth, 2, 0, 1)).thenReturn(Collections.emptyList());
+
+        // execucao
+        long enqueued = service.enqueueLateLoans(TODAY, 0, 1);
+
+        // verificacao
+        ArgumentCaptor<List<Notification>> saved = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(repository, Mockito.times(2)).saveAll(saved.capture());
+        assertThat(enqueued).isEqualTo(3);
+        assertThat(emails(saved.getAllValues().get(0))).containsExactly("artur@email.com", "camila@email.com");
+        assertThat(emails(saved.getAllValues().get(1))).containsExactly("jana@email.com");
+        assertThat(saved.getAllValues().get(0)).allMatch(notification ->
+                notification.getStatus() == NotificationStatus.PENDING && TODAY.equals(notification.getNotificationDate()));
+    }
+
+    @Test
+    @DisplayName("Nao deve enfileirar o cliente que ainda tem notificacao pendente de outro dia")
+    @SuppressWarnings("unchecked")
+    public void enqueueSkipsPendingCustomerTest(){
+        // cenario
+        LateLoan artur = new LateLoan(3L, "Artur", "artur@email.com", "As Aventuras");
+        LateLoan camila = new LateLoan(1L, "Camila", "camila@email.com", "Meu Livro");
+        Mockito.when(loanService.getLateLoans(null, 2, 0, 1)).thenReturn(Arrays.asList(artur, camila));
+        Mockito.when(repository.findEmailsByStatus(NotificationStatus.PENDING, Arrays.asList("artur@email.com", "camila@email.com")))
+                .thenReturn(Collections.singleton("artur@email.com"));
+
+        // execucao
+        long enqueued = service.enqueueLateLoans(TODAY, 0, 1);
+
+        // verificacao
+        ArgumentCaptor<List<Notification>> saved = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(repository).saveAll(saved.capture());
+        assertThat(enqueued).isEqualTo(1);
+        assertThat(emails(saved.getValue())).containsExactly("camila@email.com");
+    }
+
+    @Test
+    @DisplayName("Deve retomar o enfileiramento depois do ultimo email enfileirado no dia")
+    public void resumeEnqueueLateLoansTest(){
+        // cenario
+        Mockito.when(repository.findLastEmail(TODAY, 0, 1)).thenReturn("camila@email.com");
+        LateLoan next = new LateLoan(4L, "Jana", "jana@email.com", "Revista");
+        Mockito.when(loanService.getLateLoans(Mockito.any(), Mockito.eq(2), Mockito.eq(0), Mockito.eq(1))).thenReturn(Collections.singletonList(next));
+
+        // execucao
+        long enqueued = service.enqueueLateLoans(TODAY, 0, 1);
+
+        // verificacao
+        ArgumentCaptor<LateLoan> after = ArgumentCaptor.forClass(LateLoan.class);
+        Mockito.verify(loanService).getLateLoans(after.capture(), Mockito.eq(2), Mockito.eq(0), Mockito.eq(1));
+        assertThat(after.getValue().getCustomerEmail()).isEqualTo("camila@email.com");
+        assertThat(after.getValue().getId()).isEqualTo(Long.MAX_VALUE);
+        assertThat(enqueued).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve marcar as notificacoes enviadas e contar a tentativa das que falharam")
+    @SuppressWarnings("unchecked")
+    public void sendPendingTest(){
+        // cenario
+        Notification artur = pending(1L, "artur@email.com");
+        Notification camila = pending(2L, "camila@email.com");
+        Notification jana = pending(5L, "jana@email.com");
+        Mockito.when(repository.findNextByStatus(NotificationStatus.PENDING, 0L, 0, 1, PageRequest.of(0, 2)))
+                .thenReturn(Arrays.asList(artur, camila));
+        Mockito.when(repository.findNextByStatus(NotificationStatus.PENDING, 2L, 0, 1, PageRequest.of(0, 2)))
+                .thenReturn(Collections.singletonList(jana));
+        Mockito.when(emailService.sendMailsAsync("Atrasado", Arrays.asList("artur@email.com", "camila@email.com")))
+                .thenReturn(CompletableFuture.completedFuture(Collections.singletonList("camila@email.com")));
+        Mockito.when(emailService.sendMailsAsync("Atrasado", Collections.singletonList("jana@email.com")))
+                .thenReturn(CompletableFuture.completedFuture(Collections.emptyList()));
+
+        // execucao
+        long sent = service.sendPending("Atrasado", 0, 1);
+
+        // verificacao
+        ArgumentCaptor<Collection<Long>> sentIds = ArgumentCaptor.forClass(Collection.class);
+        Mockito.verify(repository, Mockito.times(2)).markSent(sentIds.capture(), Mockito.eq(NotificationStatus.SENT), Mockito.any());
+        assertThat(sentIds.getAllValues().get(0)).containsExactly(1L);
+        assertThat(sentIds.getAllValues().get(1)).containsExactly(5L);
+        Mockito.verify(repository).markAttemptFailed(Collections.singletonList(2L), 3, NotificationStatus.FAILED);
+        assertThat(sent).isEqualTo(2);
+    }
+
+    private Notification pending(Long id, String email) {
+        return Notification.builder().id(id).customerEmail(email).notificationDate(TODAY).status(NotificationStatus.PENDING).build();
+    }
+
+    private List<String> emails(List<Notification> notifications) {
+        return notifications.stream().map(Notification::getCustomerEmail).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,162 @@
+package com.paulina.libraryapi.service;
+
+import com.icegreen.greenmail.Managers;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.store.FolderException;
+import com.icegreen.greenmail.user.GreenMailUser;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.paulina.libraryapi.LibraryApiApplication;
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.entity.Loan;
+import com.paulina.libraryapi.model.entity.NotificationStatus;
+import com.paulina.libraryapi.model.respository.BookRepository;
+import com.paulina.libraryapi.model.respository.LoanRepository;
+import com.paulina.libraryapi.model.respository.NotificationRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Starts several nodes of the application on one shared H2 database and fires the late-loan job on all of them at
+ * the same moment, as the cron does on every replica.
+ */
+public class ScheduleClusterTest {
+
+    static final int NODES = 3;
+    static final int CUSTOMERS = 12;
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Test
+    @DisplayName("Deve enviar um unico email por cliente quando varios nos disputarem o lock do job")
+    public void singleLeaseTest() throws Exception {
+        List<ConfigurableApplicationContext> nodes = startNodes("cluster-lease", 1);
+        try {
+            // cenario
+            createLateLoans(nodes.get(0));
+
+            // execucao
+            runTogether(nodes);
+
+            // verificacao
+            assertEachCustomerMailedOnce(nodes.get(0));
+            assertThat(locks(nodes.get(0))).containsExactly(ScheduleService.LATE_LOANS_LOCK);
+        } finally {
+            nodes.forEach(ConfigurableApplicationContext::close);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve dividir os clientes em particoes entre os nos enviando um unico email por cliente")
+    public void partitionsTest() throws Exception {
+        List<ConfigurableApplicationContext> nodes = startNodes("cluster-partitions", 4);
+        try {
+            // cenario
+            createLateLoans(nodes.get(0));
+
+            // execucao
+            runTogether(nodes);
+
+            // verificacao
+            assertEachCustomerMailedOnce(nodes.get(0));
+            assertThat(locks(nodes.get(0)))
+                    .containsExactlyInAnyOrder("lateLoans-0-of-4", "lateLoans-1-of-4", "lateLoans-2-of-4", "lateLoans-3-of-4");
+        } finally {
+            nodes.forEach(ConfigurableApplicationContext::close);
+        }
+    }
+
+    private List<ConfigurableApplicationContext> startNodes(String database, int partitions) {
+        List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            // arguments rather than default properties, which application.properties would override
+            nodes.add(new SpringApplicationBuilder(LibraryApiApplication.class)
+                    .profiles("test")
+                    .run("--server.port=0",
+                            "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                            "--spring.datasource.username=sa",
+                            "--spring.mail.host=" + ServerSetupTest.SMTP.getBindAddress(),
+                            "--spring.mail.port=" + ServerSetupTest.SMTP.getPort(),
+                            "--spring.mail.username=",
+                            "--spring.mail.password=",
+                            "--spring.mail.properties.mail.smtp.auth=false",
+                            "--spring.mail.properties.mail.smtp.starttls.enable=false",
+                            "--application.mail.dispatch.recipients-per-message=5",
+                            "--application.mail.lateloans.chunk-size=5",
+                            "--application.mail.lateloans.partitions=" + partitions));
+        }
+        return nodes;
+    }
+
+    private void createLateLoans(ConfigurableApplicationContext node) {
+        BookRepository bookRepository = node.getBean(BookRepository.class);
+        LoanRepository loanRepository = node.getBean(LoanRepository.class);
+        LocalDate late = LocalDate.now().minusDays(10);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            // every other customer has two late loans
+            for (int j = 0; j <= i % 2; j++) {
+                Book book = bookRepository.save(Book.builder().title("Livro " + i + "-" + j).author("Jana").isbn("cluster-" + i + "-" + j).build());
+                loanRepository.save(Loan.builder().book(book).customer("Cliente " + i).customerEmail(email(i)).loanDate(late).build());
+            }
+        }
+        Book recent = bookRepository.save(Book.builder().title("Recente").author("Jana").isbn("cluster-recent").build());
+        loanRepository.save(Loan.builder().book(recent).customer("Em dia").customerEmail("emdia@email.com").loanDate(LocalDate.now()).build());
+    }
+
+    private void runTogether(List<ConfigurableApplicationContext> nodes) throws Exception {
+        CyclicBarrier start = new CyclicBarrier(nodes.size());
+        ExecutorService threads = Executors.newFixedThreadPool(nodes.size());
+        try {
+            List<CompletableFuture<Void>> runs = new ArrayList<>();
+            for (ConfigurableApplicationContext node : nodes) {
+                ScheduleService scheduleService = node.getBean(ScheduleService.class);
+                runs.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        start.await(10, TimeUnit.SECONDS);
+                    } catch (Exception ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    scheduleService.sendMailToLateLoans();
+                }, threads));
+            }
+            CompletableFuture.allOf(runs.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    private void assertEachCustomerMailedOnce(ConfigurableApplicationContext node) throws FolderException {
+        assertThat(greenMail.getReceivedMessages()).hasSize(CUSTOMERS);
+        Managers managers = greenMail.getManagers();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            GreenMailUser customer = managers.getUserManager().getUserByEmail(email(i));
+            assertThat(managers.getImapHostManager().getInbox(customer).getMessageCount()).isEqualTo(1);
+        }
+        NotificationRepository notificationRepository = node.getBean(NotificationRepository.class);
+        assertThat(notificationRepository.count()).isEqualTo(CUSTOMERS);
+        assertThat(notificationRepository.countByNotificationDateAndStatus(LocalDate.now(), NotificationStatus.SENT)).isEqualTo(CUSTOMERS);
+    }
+
+    private List<String> locks(ConfigurableApplicationContext node) {
+        return node.getBean(JdbcTemplate.class).queryForList("select name from shedlock", String.class);
+    }
+
+    private String email(int customer) {
+        return "cliente" + customer + "@email.com";
+    }
+}
@@ -0,0 +1,99 @@
+package com.paulina.libraryapi.service;
+
+import net.javacrumbs.shedlock.core.DefaultLockingTaskExecutor;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.SimpleLock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class ScheduleServiceTest {
+
+    ScheduleService service;
+
+    @MockBean
+    NotificationService notificationService;
+
+    @MockBean
+    LockProvider lockProvider;
+
+    @BeforeEach
+    public void setUp(){
+        this.service = new ScheduleService(notificationService, new DefaultLockingTaskExecutor(lockProvider));
+        ReflectionTestUtils.setField(service, "message", "Atrasado");
+        ReflectionTestUtils.setField(service, "partitions", 1);
+        ReflectionTestUtils.setField(service, "lockAtMostFor", Duration.ofHours(2));
+        ReflectionTestUtils.setField(service, "lockAtLeastFor", Duration.ofMinutes(5));
+    }
+
+    @Test
+    @DisplayName("Deve enfileirar as notificacoes do dia antes de enviar as pendentes")
+    public void sendMailToLateLoansTest(){
+        // cenario
+        Mockito.when(lockProvider.lock(Mockito.any())).thenReturn(Optional.of(Mockito.mock(SimpleLock.class)));
+
+        // execucao
+        service.sendMailToLateLoans();
+
+        // verificacao
+        InOrder inOrder = Mockito.inOrder(notificationService);
+        inOrder.verify(notificationService).enqueueLateLoans(LocalDate.now(), 0, 1);
+        inOrder.verify(notificationService).sendPending("Atrasado", 0, 1);
+        ArgumentCaptor<LockConfiguration> lock = ArgumentCaptor.forClass(LockConfiguration.class);
+        Mockito.verify(lockProvider).lock(lock.capture());
+        assertThat(lock.getValue().getName()).isEqualTo(ScheduleService.LATE_LOANS_LOCK);
+        assertThat(lock.getValue().getLockAtLeastFor()).isEqualTo(Duration.ofMinutes(5));
+    }
+
+    @Test
+    @DisplayName("Nao deve enviar as notificacoes quando outro no estiver com o lock")
+    public void lockedByOtherNodeTest(){
+        // cenario
+        Mockito.when(lockProvider.lock(Mockito.any())).thenReturn(Optional.empty());
+
+        // execucao
+        service.sendMailToLateLoans();
+
+        // verificacao
+        Mockito.verifyNoInteractions(notificationService);
+    }
+
+    @Test
+    @DisplayName("Deve processar apenas as particoes cujo lock conseguir obter")
+    public void sendMailToLateLoansPartitionsTest(){
+        // cenario
+        ReflectionTestUtils.setField(service, "partitions", 3);
+        Mockito.when(lockProvider.lock(Mockito.any())).thenAnswer(invocation -> {
+            LockConfiguration configuration = invocation.getArgument(0);
+            return configuration.getName().equals("lateLoans-1-of-3") ? Optional.empty() : Optional.of(Mockito.mock(SimpleLock.class));
+        });
+
+        // execucao
+        service.sendMailToLateLoans();
+
+        // verificacao
+        Mockito.verify(lockProvider, Mockito.times(3)).lock(Mockito.any());
+        Mockito.verify(notificationService).enqueueLateLoans(LocalDate.now(), 0, 3);
+        Mockito.verify(notificationService).sendPending("Atrasado", 0, 3);
+        Mockito.verify(notificationService).enqueueLateLoans(LocalDate.now(), 2, 3);
+        Mockito.verify(notificationService).sendPending("Atrasado", 2, 3);
+        Mockito.verifyNoMoreInteractions(notificationService);
+    }
+}
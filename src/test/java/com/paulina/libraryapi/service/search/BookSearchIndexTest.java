@@ -0,0 +1,119 @@
+package com.paulina.libraryapi.service.search;
+
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.respository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class BookSearchIndexTest {
+
+    BookSearchIndex index;
+
+    @MockBean
+    BookRepository repository;
+
+    Book bras = Book.builder().id(1L).title("Memórias Póstumas de Brás Cubas").author("Machado de Assis").isbn("978-85-359-0277-1").build();
+    Book carcere = Book.builder().id(2L).title("Memórias do Cárcere").author("Graciliano Ramos").isbn("978-85-01-06753-2").build();
+    Book casmurro = Book.builder().id(3L).title("Dom Casmurro").author("Machado de Assis").isbn("978-85-7232-144-9").build();
+
+    @BeforeEach
+    public void setUp(){
+        index = new BookSearchIndex(repository, 2);
+        index.index(Arrays.asList(bras, carcere, casmurro));
+    }
+
+    @Test
+    @DisplayName("Deve encontrar os livros que contem todas as palavras ignorando acentos e maiusculas")
+    public void searchAllWordsTest(){
+        assertThat(ids(index.search("MEMORIAS", 10))).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(ids(index.search("memórias machado", 10))).containsExactly(1L);
+        assertThat(ids(index.search("carcere machado", 10))).isEmpty();
+        assertThat(index.search(" - ", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve ordenar os livros pela relevancia das palavras encontradas")
+    public void searchRankingTest(){
+        Book title = Book.builder().id(4L).title("Machado").author("Jana").isbn("1").build();
+        index.index(title);
+
+        List<Book> found = index.search("machado", 2);
+
+        assertThat(ids(found)).containsExactly(4L, 1L);
+        assertThat(found.get(0).getTitle()).isEqualTo("Machado");
+    }
+
+    @Test
+    @DisplayName("Deve completar a ultima palavra da busca como prefixo, inclusive do isbn sem hifens")
+    public void searchPrefixTest(){
+        assertThat(ids(index.search("dom casm", 10))).containsExactly(3L);
+        assertThat(ids(index.search("casm dom", 10))).isEmpty();
+        assertThat(ids(index.search("97885359", 10))).containsExactly(1L);
+        assertThat(ids(index.search("978 85 01", 10))).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("Deve manter o indice atualizado ao alterar e remover livros")
+    public void updateAndRemoveTest(){
+        index.index(Book.builder().id(3L).title("Quincas Borba").author("Machado de Assis").isbn("978-85-7232-144-9").build());
+        index.remove(1L);
+
+        assertThat(index.search("casmurro", 10)).isEmpty();
+        assertThat(ids(index.search("quincas", 10))).containsExactly(3L);
+        assertThat(ids(index.search("machado", 10))).containsExactly(3L);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve indexar o livro apenas depois do commit da transacao")
+    public void indexAfterCommitTest(){
+        Book book = Book.builder().id(5L).title("O Cortiço").author("Aluísio Azevedo").isbn("5").build();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.index(book);
+            assertThat(index.search("cortico", 10)).isEmpty();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(ids(index.search("cortico", 10))).containsExactly(5L);
+    }
+
+    @Test
+    @DisplayName("Deve reconstruir o indice a partir do banco em lotes")
+    public void rebuildTest(){
+        Book atheneu = Book.builder().id(7L).title("O Ateneu").author("Raul Pompeia").isbn("7").build();
+        Mockito.when(repository.findNextByFilter(null, null, null, 0L, PageRequest.of(0, 2))).thenReturn(Arrays.asList(bras, casmurro));
+        Mockito.when(repository.findNextByFilter(null, null, null, 3L, PageRequest.of(0, 2))).thenReturn(Collections.singletonList(atheneu));
+
+        index.rebuild();
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.search("carcere", 10)).isEmpty();
+        assertThat(ids(index.search("ateneu", 10))).containsExactly(7L);
+    }
+
+    private List<Long> ids(List<Book> books) {
+        return books.stream().map(Book::getId).collect(Collectors.toList());
+    }
+}
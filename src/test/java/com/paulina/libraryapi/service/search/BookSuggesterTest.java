@@ -0,0 +1,165 @@
+package com.paulina.libraryapi.service.search;
+
+import com.paulina.libraryapi.model.entity.Book;
+import com.paulina.libraryapi.model.projection.BookLoanCount;
+import com.paulina.libraryapi.model.projection.Suggestion;
+import com.paulina.libraryapi.model.respository.BookRepository;
+import com.paulina.libraryapi.model.respository.LoanRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class BookSuggesterTest {
+
+    BookSuggester suggester;
+
+    MeterRegistry meterRegistry;
+
+    @MockBean
+    BookRepository bookRepository;
+
+    @MockBean
+    LoanRepository loanRepository;
+
+    Book bras = Book.builder().id(1L).title("Memórias Póstumas de Brás Cubas").author("Machado de Assis").build();
+    Book carcere = Book.builder().id(2L).title("Memórias do Cárcere").author("Graciliano Ramos").build();
+    Book casmurro = Book.builder().id(3L).title("Dom Casmurro").author("Machado de Assis").build();
+
+    @BeforeEach
+    public void setUp(){
+        meterRegistry = new SimpleMeterRegistry();
+        suggester = new BookSuggester(bookRepository, loanRepository, meterRegistry, 2, 3);
+        Mockito.when(bookRepository.findNextByFilter(null, null, null, 0L, PageRequest.of(0, 2))).thenReturn(Arrays.asList(bras, carcere));
+        Mockito.when(bookRepository.findNextByFilter(null, null, null, 2L, PageRequest.of(0, 2))).thenReturn(Collections.singletonList(casmurro));
+        Mockito.when(loanRepository.countLoansByBook(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(
+                new BookLoanCount(1L, 2), new BookLoanCount(2L, 5)));
+        Mockito.when(loanRepository.countLoansByBook(Collections.singletonList(3L))).thenReturn(Collections.singletonList(
+                new BookLoanCount(3L, 4)));
+        suggester.rebuild();
+    }
+
+    @Test
+    @DisplayName("Deve sugerir titulos e autores pelo prefixo, os mais emprestados primeiro")
+    public void suggestByLoansTest(){
+        // execucao
+        List<Suggestion> memorias = suggester.suggest("MEMO", 10);
+        List<Suggestion> machado = suggester.suggest("machado", 10);
+
+        // verificacao
+        assertThat(texts(memorias)).containsExactly("Memórias do Cárcere", "Memórias Póstumas de Brás Cubas");
+        assertThat(memorias.get(0).getLoans()).isEqualTo(5);
+        assertThat(machado).containsExactly(new Suggestion("Machado de Assis", Suggestion.AUTHOR, 6));
+    }
+
+    @Test
+    @DisplayName("Deve limitar as sugestoes ao tamanho pedido e ao maximo configurado")
+    public void suggestSizeTest(){
+        assertThat(texts(suggester.suggest("m", 1))).containsExactly("Machado de Assis");
+        assertThat(suggester.suggest("", 10)).isEmpty();
+        assertThat(suggester.suggest(" ", 10)).isEmpty();
+        assertThat(suggester.suggest("memorias x", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve completar apenas a palavra digitada quando o prefixo termina em espaco")
+    public void suggestWholeWordTest(){
+        suggester.index(Book.builder().id(4L).title("Domingo").author("Jana").build());
+
+        assertThat(texts(suggester.suggest("dom", 10))).containsExactly("Dom Casmurro", "Domingo");
+        assertThat(texts(suggester.suggest("dom ", 10))).containsExactly("Dom Casmurro");
+    }
+
+    @Test
+    @DisplayName("Deve atualizar as sugestoes ao emprestar, alterar e remover livros")
+    public void updateTest(){
+        // execucao
+        suggester.loaned(1L);
+        suggester.loaned(1L);
+        suggester.loaned(1L);
+        suggester.flushLoans();
+        suggester.index(Book.builder().id(3L).title("Quincas Borba").author("Machado de Assis").build());
+        suggester.remove(2L);
+
+        // verificacao
+        assertThat(suggester.suggest("memorias", 10)).containsExactly(
+                new Suggestion("Memórias Póstumas de Brás Cubas", Suggestion.TITLE, 5));
+        assertThat(suggester.suggest("dom", 10)).isEmpty();
+        assertThat(suggester.suggest("quincas", 10)).containsExactly(new Suggestion("Quincas Borba", Suggestion.TITLE, 4));
+        assertThat(suggester.suggest("machado", 10)).containsExactly(new Suggestion("Machado de Assis", Suggestion.AUTHOR, 9));
+        assertThat(suggester.suggest("graciliano", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve liberar os nos das sugestoes removidas e publicar o tamanho da arvore")
+    public void footprintTest(){
+        // cenario
+        double nodes = meterRegistry.get("library.books.suggest.nodes").gauge().value();
+        long footprint = suggester.footprint();
+        Book book = Book.builder().id(4L).title("Iracema").author("José de Alencar").build();
+
+        // execucao
+        suggester.index(book);
+        double grownNodes = meterRegistry.get("library.books.suggest.nodes").gauge().value();
+        long grownFootprint = suggester.footprint();
+        suggester.remove(4L);
+
+        // verificacao
+        assertThat(grownNodes).isGreaterThan(nodes);
+        assertThat(grownFootprint).isGreaterThan(footprint);
+        assertThat(meterRegistry.get("library.books.suggest.nodes").gauge().value()).isEqualTo(nodes);
+        assertThat(meterRegistry.get("library.books.suggest.suggestions").gauge().value()).isEqualTo(5);
+        assertThat(suggester.footprint()).isEqualTo(footprint);
+        assertThat(meterRegistry.get("library.books.suggest.memory").gauge().value()).isEqualTo(footprint);
+    }
+
+    @Test
+    @DisplayName("Deve aplicar os emprestimos em lote, reordenando as sugestoes uma vez")
+    public void flushLoansTest(){
+        // execucao
+        suggester.loaned(3L);
+        suggester.loaned(3L);
+        List<Suggestion> beforeFlush = suggester.suggest("machado", 10);
+        suggester.flushLoans();
+        suggester.flushLoans();
+
+        // verificacao
+        assertThat(beforeFlush).containsExactly(new Suggestion("Machado de Assis", Suggestion.AUTHOR, 6));
+        assertThat(suggester.suggest("machado", 10)).containsExactly(new Suggestion("Machado de Assis", Suggestion.AUTHOR, 8));
+        assertThat(texts(suggester.suggest("m", 3))).containsExactly("Machado de Assis", "Memórias do Cárcere", "Memórias Póstumas de Brás Cubas");
+    }
+
+    @Test
+    @DisplayName("Deve manter o tamanho estimado igual ao da arvore percorrida inteira")
+    public void footprintCounterTest(){
+        // execucao
+        suggester.index(Book.builder().id(4L).title("Iracema").author("José de Alencar").build());
+        suggester.index(Book.builder().id(3L).title("Quincas Borba").author("Machado de Assis").build());
+        suggester.loaned(4L);
+        suggester.flushLoans();
+        suggester.remove(2L);
+
+        // verificacao
+        assertThat(suggester.footprint()).isEqualTo(suggester.read(BookSuggester.Trie::measure));
+    }
+
+    private List<String> texts(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getText).collect(Collectors.toList());
+    }
+}